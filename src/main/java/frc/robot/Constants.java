@@ -6,6 +6,12 @@ package frc.robot;
 
 import com.revrobotics.SparkMaxPIDController.AccelStrategy;
 
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.wpilibj.PneumaticsModuleType;
+
 /**
  * The Constants class provides a convenient place for teams to hold robot-wide
  * numerical or boolean constants. This class should not be used for any other
@@ -90,15 +96,63 @@ public final class Constants {
 		/*** Distance between center of left wheel and center of right wheel */
 		public static final double kTrackWidth = 21.5;
 		public static final double kSteerPeriod = 0.02;
+		// Locations for the swerve drive modules relative to the robot center.
+		public static final Translation2d kFrontLeftLocation = new Translation2d(0.381, 0.381);
+		public static final Translation2d kFrontRightLocation = new Translation2d(0.381, -0.381);
+		public static final Translation2d kBackLeftLocation = new Translation2d(-0.381, 0.381);
+		public static final Translation2d kBackRightLocation = new Translation2d(-0.381, -0.381);
+		public static final SwerveDriveKinematics kDriveKinematics = new SwerveDriveKinematics(
+				kFrontLeftLocation, kFrontRightLocation, kBackLeftLocation, kBackRightLocation);
 		public static final boolean kFrontLeftDriveInverted = true;
 		public static final boolean kBackLeftDriveInverted = true;
 		public static final boolean kFrontRightDriveInverted = false;
 		public static final boolean kBackRightDriveInverted = false;
+		// Drive speeds are discretized over this many loop periods, more than 1 helps
+		// make up for the modules lagging behind their commands
+		public static final double kDiscretizationLookahead = 1;
+		// Use the navX turn rate instead of the commanded omega when discretizing
+		public static final boolean kDiscretizeWithMeasuredTurnRate = false;
+		// Heading hold and snap to angle PID values, in radians
+		public static final double kHeadingP = 4;
+		public static final double kHeadingI = 0;
+		public static final double kHeadingD = 0.1;
+		public static final double kMaxAngularSpeed = 3; // in radians per second
+		public static final double kMaxAngularAcceleration = 8; // in radians per second squared
+		// Joystick drive speeds can't change faster than this. The counterweight is
+		// what lets this be raised without the robot tipping. This is in drive speed
+		// units per second, where one unit is about 1.9 m/s at a drive scale of 0.5.
+		public static final double kMaxDriveAcceleration = 2;
+		// The heading is locked once the robot turns slower than this
+		public static final double kHeadingLockRate = 10; // in degrees per second
+		// How the navX is mounted. Its X axis points to the front of the robot and,
+		// since its axes are right handed with Z up, Y points to the left. Set these
+		// to -1 if the board is turned around.
+		public static final double kNavxForwardSign = 1;
+		public static final double kNavxLeftSign = 1;
 		// Speed multiplier to make sure the robot doesn't crash into something when
 		// testing, because crashing into people's shins would be bad
 		public static final double kSpeedMultiplier = 0.25;
 	}
 
+	public static final class DriveToPoseConstants {
+		// Where the drive to pose button takes the robot
+		public static final Pose2d kTarget = new Pose2d(2, 0, Rotation2d.fromDegrees(0));
+		public static final double kMaxSpeed = 1.5; // in meters per second
+		public static final double kMaxAcceleration = 3; // in meters per second squared
+		public static final double kMaxAngularSpeed = DriveConstants.kMaxAngularSpeed;
+		public static final double kMaxAngularAcceleration = DriveConstants.kMaxAngularAcceleration;
+		// Share of the acceleration used to stop sideways motion at the start
+		public static final double kAcrossShare = 0.4;
+		// Feedback on the path error
+		public static final double kTranslationP = 2;
+		public static final double kRotationP = 3;
+		// The path is replanned if the target moves more than this
+		public static final double kReplanDistance = 0.05; // in meters
+		public static final double kReplanAngle = 2; // in degrees
+		public static final double kPositionTolerance = 0.05; // in meters
+		public static final double kAngleTolerance = 2; // in degrees
+	}
+
 	public static final class SwerveConstants {
 		public static final double gearRatio = 8.14;
 		public static final double wheelDiameter = 0.1016; // in meters
@@ -106,6 +160,16 @@ public final class Constants {
 
 		public static final double kTicksToMeters = (1 / gearRatio) * Math.PI * wheelDiameter;
 		public static final double kMotorRevsPerMeter = gearRatio / (Math.PI * wheelDiameter);
+		public static final double kNeoFreeSpeedRPM = 5676;
+		// Steer motor revolutions per module revolution. This is 12.8 on an MK4 and
+		// 150 / 7 on an MK4i, which both come with the 8.14 drive ratio above. Check
+		// it against the modules on the robot. If it's wrong the steer encoder keeps
+		// drifting from the CANcoder, and the module falls back to the CANcoder after
+		// SteerSensorConstants.kMaxDriftResets.
+		public static final double kSteerGearRatio = 12.8;
+		// Wheel speed at full duty cycle, used to work out what speed a duty cycle
+		// should give
+		public static final double kMaxWheelSpeed = kNeoFreeSpeedRPM / 60 / kMotorRevsPerMeter;
 
 		// These set points resulted in back being front, front is back
 		public static final double FrontLeftZero = 124.89;
@@ -120,4 +184,171 @@ public final class Constants {
 		// public static final double BackRightZero = 32.73;
 
 	}
+
+	public static final class VelocityConstants {
+		// SPARK MAX velocity measurement, the defaults are 32 ms and 8 samples. For the
+		// NEO's hall sensor the period can be 8-64 ms and the depth 1, 2, 4, or 8.
+		public static final int kMeasurementPeriod = 16; // in ms
+		public static final int kAverageDepth = 2;
+		// How often the SPARK MAXes send velocity (status 1) and position (status 2).
+		// The default is 20 ms. Speeding up both drive frames and the steer position
+		// frame on 4 modules adds 600 frames a second, roughly 9% of the CAN bus.
+		public static final int kStatusFramePeriod = 10; // in ms
+		// RIO side estimate from the positions
+		public static final boolean kUseKalmanFilter = true;
+		public static final double kAccelerationStdDev = 30; // in meters per second squared
+		// The positions are stamped with the RIO time when they are read, but a
+		// frame can be up to a status period old by then, plus CAN delay. At speed
+		// that timing error is much bigger than the hall sensor counts, so the
+		// position noise is the timing error at a typical wheel speed.
+		public static final double kTimestampStdDev = (kStatusFramePeriod + 2) / 1000.0 / Math.sqrt(12); // in seconds
+		public static final double kTypicalWheelSpeed = 2; // in meters per second
+		public static final double kPositionStdDev = Math.hypot(
+				1.0 / 42 / SwerveConstants.kMotorRevsPerMeter / Math.sqrt(12),
+				kTypicalWheelSpeed * kTimestampStdDev);
+		// About how far behind the wheel each velocity is, on average, as measured by
+		// VelocitySourceLatencyTest with random frame timing. That test fails if the
+		// settings above change these by more than a few ms.
+		public static final double kRioEstimateLatency = 0.020; // in seconds
+		public static final double kSparkVelocityLatency = 0.030; // in seconds
+	}
+
+	public static final class SteerSensorConstants {
+		// One module's CANcoder is read each loop, cycling through this many loops. It
+		// has to be at least the number of modules, 5 reads each CANcoder every 100 ms.
+		public static final int kAbsoluteCheckLoops = 5;
+		// Fraction of the CANcoder error taken out of the steer encoder offset each
+		// time it is read
+		public static final double kDriftCorrectionGain = 0.2;
+		// Drift is only corrected while the steer encoder moved less than this since
+		// the last loop. The CANcoder reading can be up to a loop older than the
+		// encoder, so this bounds the error the timing adds. One hall count is 0.7
+		// degrees, so a module held still by its PID still counts as still.
+		public static final double kMaxCorrectionMotion = 1; // in degrees
+		// If the encoders disagree by more than this, the offset is reset instead
+		public static final double kMaxDrift = 10; // in degrees
+		// With the right gear ratio the offset should hardly ever need resetting. After
+		// this many resets in a row the module uses the CANcoder as its angle source
+		// instead. This many readings close enough to blend clear the count, about a
+		// second with each CANcoder read every 100 ms.
+		public static final int kMaxDriftResets = 3;
+		public static final int kDriftResetClearReadings = 10;
+		// The CANcoder position frame rate. The default is 100 Hz but each one is only
+		// read every 100 ms, and this keeps a reading well inside
+		// HealthConstants.kMaxSignalAge. It goes up to the loop rate if the module
+		// falls back to the CANcoder.
+		public static final double kAbsoluteUpdateFrequency = 20; // in Hz
+		public static final double kAbsoluteOnlyUpdateFrequency = 50; // in Hz
+	}
+
+	public static final class HealthConstants {
+		// A CANcoder reading older than this when it is read is considered stale
+		public static final double kMaxSignalAge = 0.1; // in seconds
+		// The CANcoder signals aren't checked for this long after the robot boots,
+		// while the first frames come in
+		public static final double kStartupGrace = 3; // in seconds
+		// How far the measured module angle can be from the setpoint, and for how many
+		// loops, before the module is faulted
+		public static final double kMaxAngleError = 30; // in degrees
+		public static final int kAngleErrorLoops = 25;
+		// The measured wheel speed has to reach this fraction of the speed expected
+		// from the duty cycle. SPARK MAXes are checked one module per loop, so each
+		// module is checked every 4 loops
+		public static final double kMinSpeedRatio = 0.25;
+		public static final double kMinCheckedDutyCycle = 0.1;
+		public static final int kSpeedErrorChecks = 13;
+		// Above this drive current the wheel is being held back, by a wall or a
+		// pushing match, so a slow wheel isn't counted as a mismatch
+		public static final double kStallCurrent = 25; // in amps
+		// A faulted module is re-enabled after its signals and controllers look
+		// healthy for this many loops (50 loops = 1 second). The wait doubles each
+		// time the same module fails again, up to this many times.
+		public static final int kRecoveryLoops = 50;
+		public static final int kMaxRecoveryDoublings = 4;
+		// A module that keeps failing is left disabled after this many recoveries,
+		// until the faults are reset
+		public static final int kMaxRecoveries = 3;
+		// Number of faults kept in the fault history
+		public static final int kFaultHistorySize = 32;
+	}
+
+	public static final class TractionConstants {
+		// A wheel is slipping when its speed is more than this much over the speed
+		// expected from the chassis
+		public static final double kSlipRatio = 0.15;
+		public static final double kSlipTolerance = 0.25; // in meters per second
+		// The output scale is multiplied by this every loop a wheel slips, and
+		// recovers at this rate once it grips
+		public static final double kSlipCutback = 0.8;
+		public static final double kRecoveryRate = 2; // per second
+		public static final double kMinOutputScale = 0.3;
+	}
+
+	public static final class VisionConstants {
+		// Double array of [x, y, rotation in degrees, latency in seconds, distance to
+		// the closest tag in meters, tag count]
+		public static final String kPoseTopic = "/Vision/RobotPose";
+		// 128 loops is 2.56 seconds of odometry, well over the camera latency
+		public static final int kHistorySize = 128;
+		// Measurements using tags further away than this are thrown out
+		public static final double kMaxTagDistance = 6; // in meters
+		// Standard deviations used to weigh vision against odometry
+		public static final double kOdometryTranslationStdDev = 0.1; // in meters
+		public static final double kOdometryRotationStdDev = 0.05; // in radians
+		public static final double kVisionTranslationStdDev = 0.1; // in meters
+		public static final double kVisionRotationStdDev = 0.2; // in radians
+		// How fast the vision standard deviations grow with the distance to the tags
+		public static final double kStdDevPerMeterSquared = 0.25;
+		// Used by the simulated camera
+		public static final double kSimLatency = 0.08; // in seconds
+		public static final double kSimTagDistance = 3; // in meters
+		public static final int kSimPublishLoops = 3;
+	}
+
+	public static final class CounterWeightConstants {
+		public static final double kGearRatio = 10;
+		public static final double kDrumRadius = 0.02; // in meters
+		public static final double kMetersPerMotorRev = 2 * Math.PI * kDrumRadius / kGearRatio;
+		public static final double kMass = 4.5; // in kg
+		// The counterweight can move this far either side of the robot center
+		public static final double kMaxTravel = 0.2; // in meters
+		// Direction the counterweight slides in, 0 is robot forward, CCW positive
+		public static final double kAxisAngle = 0; // in degrees
+		// Used to work out how far the weight has to move to cancel out the tipping
+		// moment from accelerating
+		public static final double kRobotMass = 54; // in kg
+		public static final double kCenterOfGravityHeight = 0.3; // in meters
+		// Extra shift in meters per degree of measured tilt
+		public static final double kTiltGain = 0.01;
+		// Motion profile and position PID values
+		public static final double kMaxVelocity = 1.5; // in meters per second
+		public static final double kMaxAcceleration = 10; // in meters per second squared
+		public static final double kP = 40;
+		public static final double kI = 0;
+		public static final double kD = 0.5;
+		public static final double kS = 0.1; // in volts
+		public static final double kV = 7.5; // in volts per meter per second
+		public static final double kA = 0.2; // in volts per meter per second squared
+	}
+
+	public static final class PneumaticsConstants {
+		public static final PneumaticsModuleType kModuleType = PneumaticsModuleType.REVPH;
+		// Closed loop pressure band in PSI, read from the analog pressure sensor
+		public static final double kMinPressure = 90;
+		public static final double kMaxPressure = 120;
+		// The compressor is paused when the drive motors draw more than this many amps
+		// in total, or when the battery drops below this voltage
+		public static final double kHeavyDriveCurrent = 60;
+		public static final double kLowBatteryVoltage = 11.0;
+		// Running the compressor sags the battery by itself, so once the voltage is
+		// low it has to recover past this before the compressor can run again
+		public static final double kBatteryRecoveredVoltage = 11.6;
+		// How long the load has to stay low before the compressor is allowed back on
+		public static final double kResumeDelay = 0.5;
+		// Once on, the compressor runs at least this long before it can be paused
+		public static final double kMinOnTime = 2; // in seconds
+		// Pressure and compressor current are only sampled every this many loops
+		// (5 loops = 100 ms)
+		public static final int kSampleLoops = 5;
+	}
 }
\ No newline at end of file
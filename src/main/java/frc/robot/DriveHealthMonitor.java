@@ -0,0 +1,252 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import com.ctre.phoenix6.StatusSignal;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.REVLibError;
+import com.revrobotics.CANSparkMax.FaultID;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.HealthConstants;
+import frc.robot.Constants.SwerveConstants;
+
+/**
+ * Watches the swerve modules for sensors or motor controllers that have
+ * dropped out, and disables any module that fails so the others can keep
+ * driving. Everything checked every loop uses values the drivetrain already
+ * read, the CANcoders are checked when they are sampled, and the SPARK MAXes
+ * are checked one module per loop, so the per-loop cost is only a few JNI
+ * calls.
+ *
+ * <p>
+ * Signal and mismatch faults can be caused by a healthy module having a bad
+ * moment, so the module is given another try once its signals and controllers
+ * have looked healthy for a while. The wait doubles each time the same module
+ * fails again, and a module that keeps failing is left disabled after
+ * {@link HealthConstants#kMaxRecoveries} recoveries. Motor controller faults,
+ * and modules that ran out of recoveries, stay until {@link #reset()}.
+ */
+public class DriveHealthMonitor {
+	public static enum Fault {
+		STALE_CANCODER, CANCODER_ERROR, DRIVE_CONTROLLER, STEER_CONTROLLER, ANGLE_MISMATCH, SPEED_MISMATCH
+	}
+
+	// SPARK MAX faults that mean the module can't be trusted. Things like stall or
+	// brownout can happen on a healthy module, so they're left out.
+	private static final int kCriticalFaults = (1 << FaultID.kMotorFault.value) | (1 << FaultID.kSensorFault.value)
+			| (1 << FaultID.kDRVFault.value) | (1 << FaultID.kCANRX.value) | (1 << FaultID.kCANTX.value);
+
+	private final SwerveModule[] m_modules;
+	private final int[] m_angleErrorLoops;
+	private final int[] m_speedErrorChecks;
+	private final Fault[] m_moduleFaults;
+	// Loops in a row a faulted module has looked healthy, and how many times it
+	// has failed since the last reset
+	private final int[] m_healthyLoops;
+	private final int[] m_failCount;
+	private final boolean[] m_faultSeen;
+	private final double m_startTime = Timer.getFPGATimestamp();
+	private int m_nextSparkCheck = 0;
+	private final FaultHistory m_history = new FaultHistory(HealthConstants.kFaultHistorySize);
+
+	/**
+	 * Creates a new DriveHealthMonitor
+	 *
+	 * @param modules
+	 *                The swerve modules to watch, in the same order as the
+	 *                kinematics
+	 */
+	public DriveHealthMonitor(SwerveModule... modules) {
+		m_modules = modules;
+		m_angleErrorLoops = new int[modules.length];
+		m_speedErrorChecks = new int[modules.length];
+		m_moduleFaults = new Fault[modules.length];
+		m_healthyLoops = new int[modules.length];
+		m_failCount = new int[modules.length];
+		m_faultSeen = new boolean[modules.length];
+	}
+
+	/**
+	 * Checks every module. Should be called once per loop after the modules have
+	 * been updated with a {@link SwerveSensorSnapshot}.
+	 */
+	public void update() {
+		// The motors aren't running while disabled, so only the signals are checked
+		boolean enabled = DriverStation.isEnabled();
+		// The CANcoders take a moment to start sending after the robot boots
+		boolean checkSignals = Timer.getFPGATimestamp() - m_startTime > HealthConstants.kStartupGrace;
+		for (int i = 0; i < m_modules.length; i++) {
+			m_faultSeen[i] = false;
+			SwerveModule module = m_modules[i];
+			// The CANcoders are only read every few loops, so only check them when they are
+			if (checkSignals && module.wasAbsoluteRefreshed()) {
+				StatusSignal<Double> angleSignal = module.getAbsolutePositionSignal();
+				if (!angleSignal.getStatus().isOK()) {
+					fail(i, Fault.CANCODER_ERROR);
+				} else if (angleSignal.getTimestamp().getLatency() > HealthConstants.kMaxSignalAge) {
+					fail(i, Fault.STALE_CANCODER);
+				}
+			}
+			// A disabled module, or one that isn't calibrated yet, isn't driven, so there
+			// is nothing to compare
+			if (!enabled || !module.isActive()) {
+				m_angleErrorLoops[i] = 0;
+				continue;
+			}
+			// Compare the measured angle to the setpoint, wrapped to [-180, 180]
+			double angleError = Math.abs(
+					Math.IEEEremainder(module.getAngle() - module.getPIDController().getSetpoint(), 360));
+			m_angleErrorLoops[i] = angleError > HealthConstants.kMaxAngleError ? m_angleErrorLoops[i] + 1 : 0;
+			if (m_angleErrorLoops[i] > HealthConstants.kAngleErrorLoops) {
+				fail(i, Fault.ANGLE_MISMATCH);
+			}
+		}
+
+		// Only one module's SPARK MAXes are checked each loop
+		int i = m_nextSparkCheck;
+		m_nextSparkCheck = (m_nextSparkCheck + 1) % m_modules.length;
+		checkSparks(i, enabled);
+
+		// Give faulted modules another try once they have looked healthy for long
+		// enough
+		for (int j = 0; j < m_modules.length; j++) {
+			if (m_moduleFaults[j] == null) {
+				continue;
+			}
+			m_healthyLoops[j] = m_faultSeen[j] ? 0 : m_healthyLoops[j] + 1;
+			if (canRecover(m_moduleFaults[j], m_failCount[j])
+					&& m_healthyLoops[j] >= getRecoveryLoops(m_failCount[j])) {
+				recover(j);
+			}
+		}
+	}
+
+	private void checkSparks(int i, boolean enabled) {
+		SwerveModule module = m_modules[i];
+		if (!isHealthy(module.getDriveMotor())) {
+			fail(i, Fault.DRIVE_CONTROLLER);
+			return;
+		}
+		if (!isHealthy(module.getSteerMotor())) {
+			fail(i, Fault.STEER_CONTROLLER);
+			return;
+		}
+		// The wheel should be turning at least a little when it's being driven. A
+		// wheel held still by a wall or another robot draws a lot of current, so
+		// that isn't counted.
+		double commanded = module.getCommandedDriveOutput();
+		if (enabled && m_moduleFaults[i] == null && Math.abs(commanded) > HealthConstants.kMinCheckedDutyCycle
+				&& module.getDriveMotor().getOutputCurrent() < HealthConstants.kStallCurrent) {
+			double expected = commanded * SwerveConstants.kMaxWheelSpeed;
+			double measured = module.getDriveVelocity();
+			boolean mismatch = measured / expected < HealthConstants.kMinSpeedRatio;
+			m_speedErrorChecks[i] = mismatch ? m_speedErrorChecks[i] + 1 : 0;
+			if (m_speedErrorChecks[i] > HealthConstants.kSpeedErrorChecks) {
+				fail(i, Fault.SPEED_MISMATCH);
+			}
+		} else {
+			m_speedErrorChecks[i] = 0;
+		}
+	}
+
+	/**
+	 * Whether a faulted module can be given another try without a
+	 * {@link #reset()}
+	 *
+	 * @param fault
+	 *                  The fault that disabled the module
+	 * @param failCount
+	 *                  How many times the module has failed since the last reset,
+	 *                  including this time
+	 * @return True if the module can be re-enabled once it looks healthy
+	 */
+	static boolean canRecover(Fault fault, int failCount) {
+		return fault != Fault.DRIVE_CONTROLLER && fault != Fault.STEER_CONTROLLER
+				&& failCount <= HealthConstants.kMaxRecoveries;
+	}
+
+	/**
+	 * Gets how long a faulted module has to look healthy before it is re-enabled
+	 *
+	 * @param failCount
+	 *                  How many times the module has failed since the last reset,
+	 *                  including this time
+	 * @return The number of loops
+	 */
+	static int getRecoveryLoops(int failCount) {
+		return HealthConstants.kRecoveryLoops << Math.min(failCount - 1, HealthConstants.kMaxRecoveryDoublings);
+	}
+
+	private static boolean isHealthy(CANSparkMax motorController) {
+		return (motorController.getFaults() & kCriticalFaults) == 0
+				&& motorController.getLastError() != REVLibError.kCANTimeout;
+	}
+
+	private void fail(int module, Fault fault) {
+		m_faultSeen[module] = true;
+		// Keep the first fault, and only log it once
+		if (m_moduleFaults[module] != null) {
+			return;
+		}
+		m_moduleFaults[module] = fault;
+		m_failCount[module]++;
+		m_healthyLoops[module] = 0;
+		m_modules[module].setDisabled(true);
+		m_history.add(Timer.getFPGATimestamp(), module, fault);
+		String message = "Swerve module " + module + " disabled: " + fault;
+		if (m_failCount[module] > HealthConstants.kMaxRecoveries) {
+			message += ", failed " + m_failCount[module] + " times so it stays off until the faults are reset";
+		}
+		DriverStation.reportWarning(message, false);
+		SmartDashboard.putString("Swerve module " + module + " fault", fault.toString());
+	}
+
+	private void recover(int module) {
+		if (m_moduleFaults[module] != null) {
+			DriverStation.reportWarning("Swerve module " + module + " re-enabled after " + m_moduleFaults[module],
+					false);
+		}
+		m_moduleFaults[module] = null;
+		m_angleErrorLoops[module] = 0;
+		m_speedErrorChecks[module] = 0;
+		m_healthyLoops[module] = 0;
+		m_modules[module].setDisabled(false);
+		SmartDashboard.putString("Swerve module " + module + " fault", "OK");
+	}
+
+	/**
+	 * Gets the fault that disabled a module
+	 *
+	 * @param module
+	 *               The index of the module
+	 * @return The fault, or null if the module is healthy
+	 */
+	public Fault getFault(int module) {
+		return m_moduleFaults[module];
+	}
+
+	/**
+	 * Gets the most recent faults. The history is kept across {@link #reset()}.
+	 *
+	 * @return The fault history
+	 */
+	public FaultHistory getHistory() {
+		return m_history;
+	}
+
+	/**
+	 * Clears the module faults and re-enables every module, including ones with
+	 * motor controller faults. The fault history is kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < m_modules.length; i++) {
+			m_failCount[i] = 0;
+			recover(i);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import frc.robot.Constants.VelocityConstants;
+
+/**
+ * Estimates a drive wheel's velocity on the RIO from timestamped encoder
+ * positions, instead of waiting on the SPARK MAX's averaged velocity.
+ *
+ * <p>
+ * With the Kalman filter on, the position and velocity are tracked with a
+ * constant velocity model, which smooths out the encoder quantization without
+ * the long delay of a moving average. With it off, the velocity is just the
+ * change in position over the change in time. Everything is plain doubles, so
+ * an update costs a few multiplies.
+ */
+public class DriveVelocityEstimator {
+	private final boolean m_useKalmanFilter;
+	private final double m_processNoise;
+	private final double m_measurementNoise;
+	private boolean m_initialized = false;
+	private double m_lastTime;
+	private double m_lastPosition;
+	private double m_position;
+	private double m_velocity;
+	// Covariance of the position and velocity estimate
+	private double m_p00;
+	private double m_p01;
+	private double m_p10;
+	private double m_p11;
+
+	/**
+	 * Creates a new DriveVelocityEstimator using the settings from
+	 * {@link VelocityConstants}
+	 */
+	public DriveVelocityEstimator() {
+		this(VelocityConstants.kUseKalmanFilter, VelocityConstants.kAccelerationStdDev,
+				VelocityConstants.kPositionStdDev);
+	}
+
+	/**
+	 * Creates a new DriveVelocityEstimator
+	 *
+	 * @param useKalmanFilter
+	 *                          Whether to use the Kalman filter, or just
+	 *                          differentiate the positions
+	 * @param accelerationStdDev
+	 *                          How much the wheel speed is expected to change, in
+	 *                          meters per second squared
+	 * @param positionStdDev
+	 *                          How noisy the encoder positions are, in meters
+	 */
+	public DriveVelocityEstimator(boolean useKalmanFilter, double accelerationStdDev, double positionStdDev) {
+		m_useKalmanFilter = useKalmanFilter;
+		m_processNoise = accelerationStdDev * accelerationStdDev;
+		m_measurementNoise = positionStdDev * positionStdDev;
+	}
+
+	/**
+	 * Adds a new encoder position
+	 *
+	 * @param position
+	 *                 The wheel position in meters
+	 * @param time
+	 *                 The time the position was read in seconds
+	 */
+	public void update(double position, double time) {
+		if (!m_initialized) {
+			m_initialized = true;
+			m_lastTime = time;
+			m_lastPosition = position;
+			m_position = position;
+			m_velocity = 0;
+			m_p00 = m_measurementNoise;
+			m_p01 = 0;
+			m_p10 = 0;
+			m_p11 = 1;
+			return;
+		}
+		double dt = time - m_lastTime;
+		if (dt <= 0) {
+			return;
+		}
+		m_lastTime = time;
+		if (!m_useKalmanFilter) {
+			m_velocity = (position - m_lastPosition) / dt;
+			m_lastPosition = position;
+			m_position = position;
+			return;
+		}
+
+		// Predict: x = F x, P = F P F' + Q, with F = [1 dt; 0 1] and Q from white
+		// noise acceleration
+		m_position += m_velocity * dt;
+		double dt2 = dt * dt;
+		double p00 = m_p00 + dt * (m_p10 + m_p01) + dt2 * m_p11 + m_processNoise * dt2 * dt2 / 4;
+		double p01 = m_p01 + dt * m_p11 + m_processNoise * dt2 * dt / 2;
+		double p10 = m_p10 + dt * m_p11 + m_processNoise * dt2 * dt / 2;
+		double p11 = m_p11 + m_processNoise * dt2;
+
+		// Correct with the measured position
+		double innovation = position - m_position;
+		double s = p00 + m_measurementNoise;
+		double k0 = p00 / s;
+		double k1 = p10 / s;
+		m_position += k0 * innovation;
+		m_velocity += k1 * innovation;
+		m_p00 = (1 - k0) * p00;
+		m_p01 = (1 - k0) * p01;
+		m_p10 = p10 - k1 * p00;
+		m_p11 = p11 - k1 * p01;
+		m_lastPosition = position;
+	}
+
+	/**
+	 * Gets the estimated velocity. The estimate is about
+	 * {@link VelocityConstants#kRioEstimateLatency} behind the wheel.
+	 *
+	 * @return The velocity in meters per second
+	 */
+	public double getVelocity() {
+		return m_velocity;
+	}
+
+	/**
+	 * Gets the filtered position
+	 *
+	 * @return The position in meters
+	 */
+	public double getPosition() {
+		return m_position;
+	}
+
+	/**
+	 * Restarts the estimate, for example after the encoder is zeroed
+	 */
+	public void reset() {
+		m_initialized = false;
+	}
+}
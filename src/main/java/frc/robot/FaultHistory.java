@@ -0,0 +1,99 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.util.Objects;
+
+import frc.robot.DriveHealthMonitor.Fault;
+
+/**
+ * The most recent swerve module faults, kept in a fixed size ring buffer so
+ * nothing is allocated while driving. Once it is full, each new fault
+ * replaces the oldest one.
+ */
+public class FaultHistory {
+	private final double[] m_times;
+	private final int[] m_modules;
+	private final Fault[] m_faults;
+	private int m_next = 0;
+	private int m_count = 0;
+
+	/**
+	 * Creates a new FaultHistory
+	 *
+	 * @param capacity
+	 *                 The number of faults to keep
+	 */
+	public FaultHistory(int capacity) {
+		m_times = new double[capacity];
+		m_modules = new int[capacity];
+		m_faults = new Fault[capacity];
+	}
+
+	/**
+	 * Adds a fault to the history
+	 *
+	 * @param time
+	 *               The FPGA timestamp of the fault in seconds
+	 * @param module
+	 *               The index of the module
+	 * @param fault
+	 *               The fault
+	 */
+	public void add(double time, int module, Fault fault) {
+		m_times[m_next] = time;
+		m_modules[m_next] = module;
+		m_faults[m_next] = fault;
+		m_next = (m_next + 1) % m_faults.length;
+		m_count = Math.min(m_count + 1, m_faults.length);
+	}
+
+	/**
+	 * Gets the number of faults in the history, up to the capacity
+	 *
+	 * @return The number of faults
+	 */
+	public int size() {
+		return m_count;
+	}
+
+	/**
+	 * Gets a fault from the history
+	 *
+	 * @param age
+	 *            How many faults back to look, 0 is the most recent
+	 * @return The fault
+	 */
+	public Fault getFault(int age) {
+		return m_faults[index(age)];
+	}
+
+	/**
+	 * Gets the module a fault in the history happened on
+	 *
+	 * @param age
+	 *            How many faults back to look, 0 is the most recent
+	 * @return The index of the module
+	 */
+	public int getModule(int age) {
+		return m_modules[index(age)];
+	}
+
+	/**
+	 * Gets the time a fault in the history happened
+	 *
+	 * @param age
+	 *            How many faults back to look, 0 is the most recent
+	 * @return The FPGA timestamp in seconds
+	 */
+	public double getTime(int age) {
+		return m_times[index(age)];
+	}
+
+	private int index(int age) {
+		Objects.checkIndex(age, m_count);
+		return Math.floorMod(m_next - 1 - age, m_faults.length);
+	}
+}
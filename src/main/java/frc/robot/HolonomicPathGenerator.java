@@ -0,0 +1,263 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+
+/**
+ * Plans a time optimal holonomic path from the robot's current pose and
+ * velocity to a target pose, fast enough to do inside a loop.
+ *
+ * <p>
+ * A swerve drive can translate in a straight line while it turns, so the path
+ * is a straight line to the target with the heading planned separately.
+ * Whatever part of the starting velocity isn't along the line is brought to a
+ * stop with its own profile. Each of the three is a closed form trapezoidal
+ * profile that can start moving, so planning is a handful of square roots and
+ * sampling is constant time. All the profiles are allocated once and reused,
+ * so replanning when the target moves doesn't allocate anything.
+ */
+public class HolonomicPathGenerator {
+	/**
+	 * A time optimal 1D profile from a position and velocity to a stop at another
+	 * position, with limited velocity and acceleration. Made of up to three
+	 * constant acceleration phases.
+	 */
+	private static final class Profile {
+		private double m_start;
+		private double m_startVelocity;
+		private double m_direction;
+		private double m_accel1;
+		private double m_accel3;
+		private double m_peakVelocity;
+		private double m_t1;
+		private double m_t2;
+		private double m_t3;
+		// Distance and velocity at the end of each phase, in the profile's direction
+		private double m_d1;
+		private double m_d2;
+		private double m_position;
+		private double m_velocity;
+		private double m_acceleration;
+
+		void plan(double start, double startVelocity, double goal, double maxVelocity, double maxAccel) {
+			m_start = start;
+			m_startVelocity = startVelocity;
+			double distance = goal - start;
+			// Go towards the goal, unless the robot can't stop before reaching it
+			double stoppingDistance = startVelocity * Math.abs(startVelocity) / (2 * maxAccel);
+			m_direction = distance - stoppingDistance >= 0 ? 1 : -1;
+			// Work in the direction of travel from here on
+			double d = distance * m_direction;
+			double v0 = startVelocity * m_direction;
+
+			double peak = Math.sqrt(Math.max(maxAccel * d + v0 * v0 / 2, 0));
+			if (peak > maxVelocity || v0 > maxVelocity) {
+				peak = maxVelocity;
+			}
+			m_peakVelocity = peak;
+			m_accel1 = v0 <= peak ? maxAccel : -maxAccel;
+			m_accel3 = -maxAccel;
+			m_t1 = Math.abs(peak - v0) / maxAccel;
+			m_t3 = peak / maxAccel;
+			m_d1 = (peak * peak - v0 * v0) / (2 * m_accel1);
+			double cruise = d - m_d1 - peak * peak / (2 * maxAccel);
+			m_t2 = peak > 0 ? Math.max(cruise, 0) / peak : 0;
+			m_d2 = m_d1 + peak * m_t2;
+		}
+
+		double totalTime() {
+			return m_t1 + m_t2 + m_t3;
+		}
+
+		/**
+		 * Sets {@link #m_position}, {@link #m_velocity} and {@link #m_acceleration} to
+		 * the state at a time.
+		 */
+		void sample(double t) {
+			double v0 = m_startVelocity * m_direction;
+			double d;
+			double v;
+			double a;
+			if (t < m_t1) {
+				v = v0 + m_accel1 * t;
+				d = v0 * t + m_accel1 * t * t / 2;
+				a = m_accel1;
+			} else if (t < m_t1 + m_t2) {
+				v = m_peakVelocity;
+				d = m_d1 + m_peakVelocity * (t - m_t1);
+				a = 0;
+			} else {
+				double t3 = Math.min(t - m_t1 - m_t2, m_t3);
+				v = m_peakVelocity + m_accel3 * t3;
+				d = m_d2 + m_peakVelocity * t3 + m_accel3 * t3 * t3 / 2;
+				a = t3 < m_t3 ? m_accel3 : 0;
+			}
+			m_position = m_start + d * m_direction;
+			m_velocity = v * m_direction;
+			m_acceleration = a * m_direction;
+		}
+	}
+
+	private final Profile m_along = new Profile();
+	private final Profile m_across = new Profile();
+	private final Profile m_rotation = new Profile();
+	private double m_startX;
+	private double m_startY;
+	// Unit vector from the start to the target
+	private double m_dirX;
+	private double m_dirY;
+	private double m_totalTime;
+	private double m_x;
+	private double m_y;
+	private double m_heading;
+	private double m_vx;
+	private double m_vy;
+	private double m_omega;
+	private double m_ax;
+	private double m_ay;
+
+	/**
+	 * Plans a new path
+	 *
+	 * @param start
+	 *                     The starting pose
+	 * @param vx
+	 *                     The starting field relative x velocity in meters per
+	 *                     second
+	 * @param vy
+	 *                     The starting field relative y velocity in meters per
+	 *                     second
+	 * @param omega
+	 *                     The starting turn rate in radians per second, CCW
+	 *                     positive
+	 * @param target
+	 *                     The pose to end at
+	 * @param maxSpeed
+	 *                     The max translation speed in meters per second
+	 * @param maxAccel
+	 *                     The max translation acceleration in meters per second
+	 *                     squared
+	 * @param maxOmega
+	 *                     The max turn rate in radians per second
+	 * @param maxAlpha
+	 *                     The max angular acceleration in radians per second
+	 *                     squared
+	 * @param acrossShare
+	 *                     The share of the acceleration used to stop any
+	 *                     starting velocity that isn't towards the target [0, 1)
+	 */
+	public void generate(Pose2d start, double vx, double vy, double omega, Pose2d target, double maxSpeed,
+			double maxAccel, double maxOmega, double maxAlpha, double acrossShare) {
+		m_startX = start.getX();
+		m_startY = start.getY();
+		double dx = target.getX() - m_startX;
+		double dy = target.getY() - m_startY;
+		double distance = Math.hypot(dx, dy);
+		if (distance > 1e-6) {
+			m_dirX = dx / distance;
+			m_dirY = dy / distance;
+		} else if (Math.hypot(vx, vy) > 1e-6) {
+			// Already there, so just stop along the way the robot is moving
+			m_dirX = vx / Math.hypot(vx, vy);
+			m_dirY = vy / Math.hypot(vx, vy);
+		} else {
+			m_dirX = 1;
+			m_dirY = 0;
+		}
+		double alongVelocity = vx * m_dirX + vy * m_dirY;
+		double acrossVelocity = -vx * m_dirY + vy * m_dirX;
+		// Split the limits between the two directions so the combined vector stays
+		// inside them, once any across velocity over its share has been slowed.
+		// Nothing needs to go across if the robot isn't moving that way.
+		double acrossScale = Math.abs(acrossVelocity) > 1e-6 ? acrossShare : 0;
+		double alongScale = Math.sqrt(1 - acrossScale * acrossScale);
+		m_along.plan(0, alongVelocity, distance, maxSpeed * alongScale, maxAccel * alongScale);
+		if (acrossScale > 0) {
+			m_across.plan(0, acrossVelocity, 0, maxSpeed * acrossScale, maxAccel * acrossScale);
+		} else {
+			m_across.plan(0, 0, 0, maxSpeed, maxAccel);
+		}
+		// Turn the short way round
+		double startHeading = start.getRotation().getRadians();
+		double goalHeading = startHeading
+				+ MathUtil.angleModulus(target.getRotation().getRadians() - startHeading);
+		m_rotation.plan(startHeading, omega, goalHeading, maxOmega, maxAlpha);
+		m_totalTime = Math.max(m_along.totalTime(), Math.max(m_across.totalTime(), m_rotation.totalTime()));
+	}
+
+	/**
+	 * Gets how long the path takes
+	 *
+	 * @return The time in seconds
+	 */
+	public double getTotalTime() {
+		return m_totalTime;
+	}
+
+	/**
+	 * Moves the sample to a time along the path. Read the result with the getters,
+	 * nothing is allocated.
+	 *
+	 * @param t
+	 *          The time since the path started in seconds
+	 */
+	public void sample(double t) {
+		m_along.sample(t);
+		m_across.sample(t);
+		m_rotation.sample(t);
+		m_x = m_startX + m_along.m_position * m_dirX - m_across.m_position * m_dirY;
+		m_y = m_startY + m_along.m_position * m_dirY + m_across.m_position * m_dirX;
+		m_vx = m_along.m_velocity * m_dirX - m_across.m_velocity * m_dirY;
+		m_vy = m_along.m_velocity * m_dirY + m_across.m_velocity * m_dirX;
+		m_ax = m_along.m_acceleration * m_dirX - m_across.m_acceleration * m_dirY;
+		m_ay = m_along.m_acceleration * m_dirY + m_across.m_acceleration * m_dirX;
+		m_heading = m_rotation.m_position;
+		m_omega = m_rotation.m_velocity;
+	}
+
+	public double getX() {
+		return m_x;
+	}
+
+	public double getY() {
+		return m_y;
+	}
+
+	/** @return The sampled heading in radians */
+	public double getHeading() {
+		return m_heading;
+	}
+
+	public double getVx() {
+		return m_vx;
+	}
+
+	public double getVy() {
+		return m_vy;
+	}
+
+	/**
+	 * @return The sampled field relative x acceleration in meters per second
+	 *         squared
+	 */
+	public double getAx() {
+		return m_ax;
+	}
+
+	/**
+	 * @return The sampled field relative y acceleration in meters per second
+	 *         squared
+	 */
+	public double getAy() {
+		return m_ay;
+	}
+
+	/** @return The sampled turn rate in radians per second */
+	public double getOmega() {
+		return m_omega;
+	}
+}
@@ -0,0 +1,127 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * A fixed size, time ordered ring buffer of poses that can be sampled at any
+ * time between the oldest and newest entries. Nothing is allocated when
+ * adding, so it can be filled every loop.
+ */
+public class PoseHistory {
+	private final double[] m_times;
+	private final double[] m_x;
+	private final double[] m_y;
+	private final double[] m_theta;
+	private int m_start = 0;
+	private int m_count = 0;
+
+	/**
+	 * Creates a new PoseHistory
+	 *
+	 * @param capacity
+	 *                 How many poses to keep, once full the oldest is dropped
+	 */
+	public PoseHistory(int capacity) {
+		m_times = new double[capacity];
+		m_x = new double[capacity];
+		m_y = new double[capacity];
+		m_theta = new double[capacity];
+	}
+
+	/**
+	 * Adds a pose. Poses must be added in time order, a pose older than the newest
+	 * entry is ignored.
+	 *
+	 * @param time
+	 *             The time of the pose in seconds
+	 * @param pose
+	 *             The pose
+	 */
+	public void add(double time, Pose2d pose) {
+		if (m_count > 0 && time <= m_times[index(m_count - 1)]) {
+			return;
+		}
+		int i;
+		if (m_count < m_times.length) {
+			i = index(m_count);
+			m_count++;
+		} else {
+			i = m_start;
+			m_start = (m_start + 1) % m_times.length;
+		}
+		m_times[i] = time;
+		m_x[i] = pose.getX();
+		m_y[i] = pose.getY();
+		m_theta[i] = pose.getRotation().getRadians();
+	}
+
+	/**
+	 * Gets the pose at a time, interpolating between the entries either side of
+	 * it. Times outside the history get the oldest or newest pose.
+	 *
+	 * @param time
+	 *             The time in seconds
+	 * @return The pose, or null if the history is empty
+	 */
+	public Pose2d sample(double time) {
+		if (m_count == 0) {
+			return null;
+		}
+		if (time <= m_times[m_start]) {
+			return pose(m_start);
+		}
+		int newest = index(m_count - 1);
+		if (time >= m_times[newest]) {
+			return pose(newest);
+		}
+		// Binary search for the first entry at or after the time
+		int low = 0;
+		int high = m_count - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (m_times[index(mid)] < time) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		int after = index(low);
+		int before = index(low - 1);
+		double t = (time - m_times[before]) / (m_times[after] - m_times[before]);
+		double theta = m_theta[before] + MathUtil.angleModulus(m_theta[after] - m_theta[before]) * t;
+		return new Pose2d(MathUtil.interpolate(m_x[before], m_x[after], t),
+				MathUtil.interpolate(m_y[before], m_y[after], t), new Rotation2d(theta));
+	}
+
+	/**
+	 * Gets the time of the oldest pose
+	 *
+	 * @return The time in seconds, or NaN if the history is empty
+	 */
+	public double getOldestTime() {
+		return m_count == 0 ? Double.NaN : m_times[m_start];
+	}
+
+	public int size() {
+		return m_count;
+	}
+
+	public void clear() {
+		m_start = 0;
+		m_count = 0;
+	}
+
+	private int index(int age) {
+		return (m_start + age) % m_times.length;
+	}
+
+	private Pose2d pose(int i) {
+		return new Pose2d(m_x[i], m_y[i], new Rotation2d(m_theta[i]));
+	}
+}
@@ -6,17 +6,24 @@ package frc.robot;
 
 import edu.wpi.first.wpilibj.GenericHID;
 import edu.wpi.first.wpilibj.Joystick;
+import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.XboxController;
 import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
 import frc.robot.commands.CalibrationAutoCommand;
 import frc.robot.Constants.ControllerConstants;
 import frc.robot.Constants.ControllerConstants.Axis;
+import frc.robot.Constants.ControllerConstants.DPad;
+import frc.robot.Constants.DriveToPoseConstants;
 import frc.robot.commands.DefaultDriveCommand;
+import frc.robot.commands.DriveToPoseCommand;
 // import frc.robot.commands.ResetToZeroDegreesCommand;
-// import frc.robot.subsystems.CounterWeightSubsystem;
+import frc.robot.subsystems.CounterWeightSubsystem;
 import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.subsystems.PneumaticsSubsystem;
+import frc.robot.sim.SimVisionPublisher;
 
 /**
  * This class is where the bulk of the robot should be declared. Since
@@ -29,13 +36,22 @@ public class RobotContainer {
 	private final Joystick m_joystick = new Joystick(ControllerConstants.kDriverControllerPort);
 	private final GenericHID m_controller = new GenericHID(ControllerConstants.kDriverControllerPort);
 	private final DriveSubsystem m_driveSubsystem = new DriveSubsystem();
-	// private final CounterWeightSubsystem m_counterWeightSubsystem = new
-	// CounterWeightSubsystem();
+	private final DefaultDriveCommand m_defaultDriveCommand = new DefaultDriveCommand(
+			m_driveSubsystem,
+			() -> m_joystick.getRawAxis(Axis.kLeftX),
+			() -> m_joystick.getRawAxis(Axis.kLeftY),
+			() -> m_joystick.getRawAxis(Axis.kRightX));
+	private final PneumaticsSubsystem m_pneumaticsSubsystem = new PneumaticsSubsystem(m_driveSubsystem);
+	private final CounterWeightSubsystem m_counterWeightSubsystem = new CounterWeightSubsystem(m_driveSubsystem);
 
 	/**
 	 * The container for the robot. Contains subsystems, OI devices, and commands.
 	 */
 	public RobotContainer() {
+		// Stand in for the camera so vision fusion can be tested without one
+		if (RobotBase.isSimulation()) {
+			new SimVisionPublisher(m_driveSubsystem);
+		}
 		// Configure the button bindings
 		configureButtonBindings();
 	}
@@ -47,12 +63,22 @@ public class RobotContainer {
 	 * passing it to a {@link edu.wpi.first.wpilibj2.command.button.JoystickButton}.
 	 */
 	private void configureButtonBindings() {
-		m_driveSubsystem.setDefaultCommand(
-				new DefaultDriveCommand(
-						m_driveSubsystem,
-						() -> m_joystick.getRawAxis(Axis.kLeftX),
-						() -> m_joystick.getRawAxis(Axis.kLeftY),
-						() -> m_joystick.getRawAxis(Axis.kRightX)));
+		m_driveSubsystem.setDefaultCommand(m_defaultDriveCommand);
+		// Snap the robot to face up, right, down, or left on the field with the D-pad
+		new Trigger(() -> m_controller.getPOV() == DPad.kUp)
+				.onTrue(new InstantCommand(() -> m_defaultDriveCommand.snapToHeading(0)));
+		new Trigger(() -> m_controller.getPOV() == DPad.kRight)
+				.onTrue(new InstantCommand(() -> m_defaultDriveCommand.snapToHeading(-90)));
+		new Trigger(() -> m_controller.getPOV() == DPad.kDown)
+				.onTrue(new InstantCommand(() -> m_defaultDriveCommand.snapToHeading(180)));
+		new Trigger(() -> m_controller.getPOV() == DPad.kLeft)
+				.onTrue(new InstantCommand(() -> m_defaultDriveCommand.snapToHeading(90)));
+		// Drive to the target pose while square is held
+		new Trigger(() -> m_controller.getRawButton(ControllerConstants.Button.kSquare))
+				.whileTrue(new DriveToPoseCommand(m_driveSubsystem, () -> DriveToPoseConstants.kTarget));
+		// Re-enable any swerve modules the health monitor turned off
+		new Trigger(() -> m_controller.getRawButton(ControllerConstants.Button.kShare))
+				.onTrue(new InstantCommand(() -> m_driveSubsystem.getHealthMonitor().reset()));
 		// new Trigger(() ->
 		// m_controller.getRawButton(ControllerConstants.Button.kTriangle))
 		// .onTrue(new ResetToZeroDegreesCommand());
@@ -0,0 +1,144 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.math.MathUtil;
+import frc.robot.Constants.SteerSensorConstants;
+
+/**
+ * Keeps track of the angle of a swerve module when its steer motor encoder
+ * reads zero, so the module angle can come from the motor encoder, which is
+ * fast and in the same frame as the drive position.
+ *
+ * <p>
+ * The offset is set from the first CANcoder reading, and each reading after
+ * that nudges it to take out drift. The CANcoder and motor encoder are read at
+ * slightly different times, so readings only count while the steer motor has
+ * hardly moved since the last loop. If the offset keeps having to be reset,
+ * the steer encoder can't be trusted and the CANcoder should be used instead.
+ */
+public class SteerOffsetEstimator {
+	private double m_offset;
+	private boolean m_calibrated = false;
+	private boolean m_absoluteOnly = false;
+	// Resets since the last run of readings that were close enough to blend
+	private int m_driftResets = 0;
+	private int m_blendsSinceReset = 0;
+	private double m_lastMotorPosition = Double.NaN;
+	private double m_motion = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Adds the latest steer motor encoder position. This should be called every
+	 * loop, before {@link #addAbsolute(double, double)}.
+	 *
+	 * @param motorPosition
+	 *                      The steer motor encoder position in degrees of module
+	 *                      rotation
+	 */
+	public void updateMotor(double motorPosition) {
+		if (!Double.isNaN(m_lastMotorPosition)) {
+			m_motion = Math.abs(motorPosition - m_lastMotorPosition);
+		}
+		m_lastMotorPosition = motorPosition;
+	}
+
+	/**
+	 * Whether the steer motor moved little enough since the last loop for a
+	 * CANcoder reading to be compared with it
+	 *
+	 * @return True if the module is nearly still
+	 */
+	public boolean isStill() {
+		return m_motion < SteerSensorConstants.kMaxCorrectionMotion;
+	}
+
+	/**
+	 * Corrects the offset with a CANcoder reading. Does nothing while the module
+	 * is moving, or once it has fallen back to the CANcoder.
+	 *
+	 * @param absoluteAngle
+	 *                      The CANcoder angle in degrees
+	 * @param motorPosition
+	 *                      The steer motor encoder position in degrees, from the
+	 *                      same loop
+	 * @return True if the offset has been reset too many times in a row, and the
+	 *         module just fell back to the CANcoder
+	 */
+	public boolean addAbsolute(double absoluteAngle, double motorPosition) {
+		if (m_absoluteOnly || !isStill()) {
+			return false;
+		}
+		double error = MathUtil.inputModulus(absoluteAngle - (motorPosition + m_offset), -180, 180);
+		if (!m_calibrated) {
+			m_offset = absoluteAngle - motorPosition;
+			m_calibrated = true;
+		} else if (Math.abs(error) > SteerSensorConstants.kMaxDrift) {
+			// Too far apart to blend, so jump. This shouldn't keep happening, if it does
+			// the steer gear ratio is probably wrong.
+			m_offset = absoluteAngle - motorPosition;
+			m_blendsSinceReset = 0;
+			if (++m_driftResets > SteerSensorConstants.kMaxDriftResets) {
+				m_absoluteOnly = true;
+				return true;
+			}
+		} else {
+			m_offset += SteerSensorConstants.kDriftCorrectionGain * error;
+			// A knock can need a reset now and then, so the count only builds up if the
+			// encoders don't settle back in between
+			if (++m_blendsSinceReset >= SteerSensorConstants.kDriftResetClearReadings) {
+				m_driftResets = 0;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the module angle from a steer motor encoder position
+	 *
+	 * @param motorPosition
+	 *                      The steer motor encoder position in degrees
+	 * @return The module angle in degrees [0, 360)
+	 */
+	public double getAngle(double motorPosition) {
+		return MathUtil.inputModulus(motorPosition + m_offset, 0, 360);
+	}
+
+	/**
+	 * Gets the angle of the module when the steer motor encoder reads zero
+	 *
+	 * @return The offset in degrees, not wrapped
+	 */
+	public double getOffset() {
+		return m_offset;
+	}
+
+	/**
+	 * Whether the offset has been set from a CANcoder reading
+	 *
+	 * @return True once calibrated
+	 */
+	public boolean isCalibrated() {
+		return m_calibrated;
+	}
+
+	/**
+	 * Whether the offset kept needing resets, so the CANcoder should be used as
+	 * the angle source instead
+	 *
+	 * @return True if only the CANcoder should be used
+	 */
+	public boolean isAbsoluteOnly() {
+		return m_absoluteOnly;
+	}
+
+	/**
+	 * Gets how many times in a row the offset has been reset
+	 *
+	 * @return The number of resets since the last run of good readings
+	 */
+	public int getDriftResets() {
+		return m_driftResets;
+	}
+}
@@ -4,18 +4,28 @@
 
 package frc.robot;
 
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.MagnetSensorConfigs;
 import com.ctre.phoenix6.hardware.CANcoder;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.CANSparkMax.IdleMode;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import frc.robot.Constants.DriveConstants;
+import frc.robot.Constants.SteerSensorConstants;
 import frc.robot.Constants.SwerveConstants;
+import frc.robot.Constants.VelocityConstants;
+import frc.robot.TunableParameters.Parameter;
 
 /** Add your docs here. */
 public class SwerveModule {
@@ -25,6 +35,20 @@ public class SwerveModule {
 	private CANSparkMax m_driveMotor;
 	public RelativeEncoder m_driveEncoder;
 	private CANSparkMax m_steerMotor;
+	private RelativeEncoder m_steerEncoder;
+	private StatusSignal<Double> m_absolutePosition;
+	private boolean m_absoluteRefreshed = false;
+	private double m_angle;
+	private SteerOffsetEstimator m_steerOffset = new SteerOffsetEstimator();
+	private double m_drivePosition;
+	// Drive encoder position that counts as zero. The SPARK MAX isn't zeroed,
+	// since its cached position would stay stale until the next status frame.
+	private double m_driveOffset;
+	private boolean m_driveRebasePending = false;
+	private DriveVelocityEstimator m_velocityEstimator = new DriveVelocityEstimator();
+	private double m_commandedDriveOutput;
+	private boolean m_disabled = false;
+	private TunableParameters.Snapshot m_parameters;
 
 	public SwerveModule(int CANport, int drivePort, int steerPort, double magnetOfset, boolean inverted) {
 		m_CANCoder = new CANcoder(CANport);
@@ -36,7 +60,27 @@ public class SwerveModule {
 		m_driveMotor.setInverted(inverted);
 		configMotorController(m_steerMotor);
 		m_PIDController.enableContinuousInput(0, 360);
+		updateParameters();
 		m_driveEncoder.setPositionConversionFactor(1 / SwerveConstants.kMotorRevsPerMeter);
+		// Velocity is reported in RPM, so divide by 60 to get meters per second
+		m_driveEncoder.setVelocityConversionFactor(1 / SwerveConstants.kMotorRevsPerMeter / 60);
+		// Shorten the velocity window, and get velocity and position more often, so
+		// there is less lag
+		m_driveEncoder.setMeasurementPeriod(VelocityConstants.kMeasurementPeriod);
+		m_driveEncoder.setAverageDepth(VelocityConstants.kAverageDepth);
+		m_driveMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus1, VelocityConstants.kStatusFramePeriod);
+		m_driveMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus2, VelocityConstants.kStatusFramePeriod);
+		// The steer NEO's encoder is the main angle source, and comes in the same frame
+		// at the same rate as the drive position
+		m_steerEncoder = m_steerMotor.getEncoder();
+		m_steerEncoder.setPositionConversionFactor(360 / SwerveConstants.kSteerGearRatio);
+		m_steerEncoder.setVelocityConversionFactor(360 / SwerveConstants.kSteerGearRatio / 60);
+		m_steerMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus2, VelocityConstants.kStatusFramePeriod);
+		// Only one CANcoder is read each loop, so its position frames don't need to
+		// come at the default 100 Hz
+		m_absolutePosition = m_CANCoder.getAbsolutePosition();
+		BaseStatusSignal.setUpdateFrequencyForAll(SteerSensorConstants.kAbsoluteUpdateFrequency,
+				m_absolutePosition, m_CANCoder.getPosition(), m_CANCoder.getVelocity());
 	}
 
 	/***
@@ -55,6 +99,19 @@ public class SwerveModule {
 		motorController.setSmartCurrentLimit(30);
 	}
 
+	/**
+	 * Picks up any steer PID gains tuned since the last call. Only compares the
+	 * parameter snapshot, so it is cheap to call every loop.
+	 */
+	public void updateParameters() {
+		TunableParameters.Snapshot parameters = TunableParameters.get();
+		if (parameters != m_parameters) {
+			m_parameters = parameters;
+			m_PIDController.setPID(parameters.get(Parameter.DRIVE_P), parameters.get(Parameter.DRIVE_I),
+					parameters.get(Parameter.DRIVE_D));
+		}
+	}
+
 	public PIDController getPIDController() {
 		return this.m_PIDController;
 	}
@@ -79,12 +136,211 @@ public class SwerveModule {
 		return this.m_steerMotor;
 	}
 
+	/**
+	 * Updates the module from one sample of its motor encoders. This should be
+	 * called once per loop with positions read together for every module.
+	 * 
+	 * <p>
+	 * The angle comes from the steer motor encoder, offset by where the CANcoder
+	 * says the module is. The CANcoder is only read when asked, and then nudges
+	 * the offset to correct any drift, see {@link SteerOffsetEstimator}. It is
+	 * read every call until the first good
+	 * reading taken while the module is still, and the module shouldn't be driven
+	 * until then, see {@link #isSteerCalibrated()}.
+	 * 
+	 * @param drivePosition
+	 *                           The drive encoder position in meters, as
+	 *                           reported by the SPARK MAX
+	 * @param steerMotorPosition
+	 *                           The steer motor encoder position in degrees
+	 * @param time
+	 *                           The FPGA time the positions were read in seconds
+	 * @param readAbsolute
+	 *                           Whether to read the CANcoder this time
+	 * @return The module angle in degrees [0, 360)
+	 */
+	public double updateSensors(double drivePosition, double steerMotorPosition, double time, boolean readAbsolute) {
+		if (m_driveRebasePending) {
+			m_driveOffset = drivePosition;
+			m_driveRebasePending = false;
+		}
+		m_drivePosition = drivePosition - m_driveOffset;
+		// The estimator gets the encoder position as is, so a rebase doesn't look like
+		// the wheel moving
+		m_velocityEstimator.update(drivePosition, time);
+
+		m_steerOffset.updateMotor(steerMotorPosition);
+		boolean absoluteOnly = m_steerOffset.isAbsoluteOnly();
+		m_absoluteRefreshed = readAbsolute || !m_steerOffset.isCalibrated() || absoluteOnly;
+		if (m_absoluteRefreshed && m_absolutePosition.refresh().getStatus().isOK()) {
+			double absoluteAngle = 360 * m_absolutePosition.getValue();
+			if (m_steerOffset.addAbsolute(absoluteAngle, steerMotorPosition)) {
+				// The CANcoder is read every loop from now on
+				m_absolutePosition.setUpdateFrequency(SteerSensorConstants.kAbsoluteOnlyUpdateFrequency);
+				DriverStation.reportWarning("Swerve module " + m_CANCoder.getDeviceID()
+						+ " steer encoder keeps drifting, using the CANcoder instead. Check kSteerGearRatio.", false);
+				absoluteOnly = true;
+			}
+			if (absoluteOnly) {
+				m_angle = MathUtil.inputModulus(absoluteAngle, 0, 360);
+				return m_angle;
+			}
+		} else if (absoluteOnly) {
+			return m_angle;
+		}
+		m_angle = m_steerOffset.getAngle(steerMotorPosition);
+		return m_angle;
+	}
+
+	/**
+	 * Gets the module angle from the last call to
+	 * {@link #updateSensors(double, double, double, boolean)}
+	 * 
+	 * @return The module angle in degrees [0, 360)
+	 */
+	public double getAngle() {
+		return m_angle;
+	}
+
+	/**
+	 * Whether the module angle is known. Until the CANcoder has given a good
+	 * reading, the steer motor encoder is only relative, so the module shouldn't
+	 * be steered, driven, or used for odometry.
+	 * 
+	 * @return True once the steer encoder offset has been set from the CANcoder
+	 */
+	public boolean isSteerCalibrated() {
+		return m_steerOffset.isCalibrated();
+	}
+
+	/**
+	 * Whether the module can be driven, meaning it isn't disabled and its angle is
+	 * known
+	 * 
+	 * @return True if the module can be driven
+	 */
+	public boolean isActive() {
+		return !m_disabled && m_steerOffset.isCalibrated();
+	}
+
+	/**
+	 * Whether the CANcoder was read in the last call to
+	 * {@link #updateSensors(double, double, double, boolean)}
+	 * 
+	 * @return True if the absolute position signal is fresh
+	 */
+	public boolean wasAbsoluteRefreshed() {
+		return m_absoluteRefreshed;
+	}
+
+	public RelativeEncoder getSteerEncoder() {
+		return this.m_steerEncoder;
+	}
+
+	/**
+	 * Gets the wheel velocity estimated on the RIO from the drive positions. This
+	 * is about {@link VelocityConstants#kRioEstimateLatency} behind the wheel,
+	 * compared to {@link VelocityConstants#kSparkVelocityLatency} for
+	 * {@link RelativeEncoder#getVelocity()}.
+	 * 
+	 * @return The velocity in meters per second
+	 */
+	public double getDriveVelocity() {
+		return m_velocityEstimator.getVelocity();
+	}
+
+	/**
+	 * Zeroes the drive position used for odometry. The next encoder sample becomes
+	 * the new zero, so the distance doesn't jump back while the SPARK MAX's
+	 * position frame catches up, and the velocity estimate carries on.
+	 */
+	public void resetDrivePosition() {
+		m_drivePosition = 0;
+		m_driveRebasePending = true;
+	}
+
+	/**
+	 * Gets the distance driven since the last {@link #resetDrivePosition()} and
+	 * angle of the module for odometry, using the values from the last call to
+	 * {@link #updateSensors(double, double, double, boolean)}
+	 * 
+	 * @return The module position
+	 */
+	public SwerveModulePosition getPosition() {
+		return new SwerveModulePosition(m_drivePosition, Rotation2d.fromDegrees(m_angle));
+	}
+
+	/**
+	 * Gets the CANcoder absolute position signal, so its status and timestamp
+	 * can be checked without another CAN read
+	 * 
+	 * @return The absolute position signal from the last refresh
+	 */
+	public StatusSignal<Double> getAbsolutePositionSignal() {
+		return m_absolutePosition;
+	}
+
+	/**
+	 * Gets the duty cycle last sent to the drive motor by
+	 * {@link #setModuleState(SwerveModuleState)} or
+	 * {@link #setDriveOutput(double)}
+	 * 
+	 * @return The duty cycle [-1, 1]
+	 */
+	public double getCommandedDriveOutput() {
+		return m_commandedDriveOutput;
+	}
+
+	public boolean isDisabled() {
+		return m_disabled;
+	}
+
+	/**
+	 * Disables or re-enables the module. A disabled module stops both motors and
+	 * coasts, so it rolls and swivels freely instead of dragging the robot.
+	 * 
+	 * @param disabled
+	 *                 Whether the module should be disabled
+	 */
+	public void setDisabled(boolean disabled) {
+		if (disabled == m_disabled) {
+			return;
+		}
+		m_disabled = disabled;
+		IdleMode mode = disabled ? IdleMode.kCoast : IdleMode.kBrake;
+		m_driveMotor.setIdleMode(mode);
+		m_steerMotor.setIdleMode(mode);
+		if (disabled) {
+			m_commandedDriveOutput = 0;
+			m_driveMotor.set(0);
+			m_steerMotor.set(0);
+		}
+	}
+
+	/**
+	 * Sets the drive motor duty cycle directly. Does nothing unless the module is
+	 * {@link #isActive() active}.
+	 * 
+	 * @param dutyCycle
+	 *                  The duty cycle [-1, 1]
+	 */
+	public void setDriveOutput(double dutyCycle) {
+		if (!isActive()) {
+			return;
+		}
+		m_commandedDriveOutput = dutyCycle;
+		m_driveMotor.set(dutyCycle);
+	}
+
 	public void setModuleState(SwerveModuleState state) {
+		if (!isActive()) {
+			return;
+		}
 		// Will allow the module to spin to 180 deg + target angle
 		// but swap drive speed if that is quicker than normal
 		state = SwerveModuleState.optimize(state, state.angle);
 		// Set drive speed
-		m_driveMotor.set(state.speedMetersPerSecond * DriveConstants.kDriveScale);
+		setDriveOutput(state.speedMetersPerSecond * TunableParameters.get(Parameter.DRIVE_SCALE));
 		m_PIDController.setSetpoint(state.angle.getDegrees());
 		// Print state to dashboard
 		SmartDashboard.putString("Swerve module " + m_CANCoder.getDeviceID(), state.toString());
@@ -0,0 +1,104 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants.SteerSensorConstants;
+
+/**
+ * One sample of every swerve motor position per loop. All eight SPARK MAX
+ * positions are read back to back, before any of the modules are updated, so
+ * steering, odometry and velocity estimation all use the same values that
+ * loop. The values are the SPARK MAXes' cached status frames, which arrived at
+ * different times and can each be up to a status frame period old. REVLib
+ * doesn't give the frames' own timestamps, so the whole sample is stamped with
+ * the RIO time it was read. The CANcoders are only read for one module every
+ * few loops, to correct the steer motor encoders.
+ */
+public class SwerveSensorSnapshot {
+	private final SwerveModule[] m_modules;
+	private final double[] m_drivePositions;
+	private final double[] m_steerMotorPositions;
+	private final double[] m_angles;
+	private double m_timestamp;
+	private int m_loopCount = 0;
+
+	/**
+	 * Creates a new SwerveSensorSnapshot
+	 *
+	 * @param modules
+	 *                The swerve modules to sample, in the same order as the
+	 *                kinematics
+	 */
+	public SwerveSensorSnapshot(SwerveModule... modules) {
+		m_modules = modules;
+		m_drivePositions = new double[modules.length];
+		m_steerMotorPositions = new double[modules.length];
+		m_angles = new double[modules.length];
+	}
+
+	/**
+	 * Reads the motor positions and updates every module. Should be called once
+	 * per loop, before anything uses the module angles or positions.
+	 */
+	public void sample() {
+		m_timestamp = Timer.getFPGATimestamp();
+		for (int i = 0; i < m_modules.length; i++) {
+			m_drivePositions[i] = m_modules[i].getDriveEncoder().getPosition();
+			m_steerMotorPositions[i] = m_modules[i].getSteerEncoder().getPosition();
+		}
+		// Spread the CANcoder reads out so only one happens per loop
+		int absoluteModule = m_loopCount % SteerSensorConstants.kAbsoluteCheckLoops;
+		m_loopCount = (m_loopCount + 1) % SteerSensorConstants.kAbsoluteCheckLoops;
+		for (int i = 0; i < m_modules.length; i++) {
+			m_angles[i] = m_modules[i].updateSensors(m_drivePositions[i], m_steerMotorPositions[i], m_timestamp,
+					i == absoluteModule);
+		}
+	}
+
+	/**
+	 * Gets the FPGA time the last sample was read. The frames in it are older by
+	 * up to a status frame period.
+	 *
+	 * @return The time in seconds
+	 */
+	public double getTimestamp() {
+		return m_timestamp;
+	}
+
+	/**
+	 * Gets a drive position from the last sample
+	 *
+	 * @param module
+	 *               The index of the module
+	 * @return The drive position in meters
+	 */
+	public double getDrivePosition(int module) {
+		return m_drivePositions[module];
+	}
+
+	/**
+	 * Gets a steer motor encoder position from the last sample, before the
+	 * CANcoder offset is added
+	 *
+	 * @param module
+	 *               The index of the module
+	 * @return The steer motor position in degrees
+	 */
+	public double getSteerMotorPosition(int module) {
+		return m_steerMotorPositions[module];
+	}
+
+	/**
+	 * Gets a module angle from the last sample
+	 *
+	 * @param module
+	 *               The index of the module
+	 * @return The module angle in degrees [0, 360)
+	 */
+	public double getAngle(int module) {
+		return m_angles[module];
+	}
+}
@@ -0,0 +1,221 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.TractionConstants;
+
+/**
+ * Detects wheel slip on each swerve module and scales back the drive output of
+ * any module that is slipping.
+ *
+ * <p>
+ * Each wheel's measured velocity, with the part caused by the robot spinning
+ * taken out, should match the chassis velocity. The chassis velocity is
+ * estimated from the other modules, and from the last estimate plus the navX
+ * acceleration, so slip is caught both when one wheel spins and when all four
+ * do on a hard launch.
+ */
+public class TractionController {
+	private static final double kGravity = 9.81;
+
+	private final SwerveModule[] m_modules;
+	private final double[] m_moduleX;
+	private final double[] m_moduleY;
+	// What each module measured this loop, kept so nothing is allocated per loop
+	private final double[] m_speeds;
+	private final double[] m_angles;
+	private final boolean[] m_active;
+	// Translation velocity each module measured this loop, in the robot frame
+	private final double[] m_translationX;
+	private final double[] m_translationY;
+	private final boolean[] m_slipping;
+	private final double[] m_outputScale;
+	private double m_estimatedVx;
+	private double m_estimatedVy;
+	private double m_lastTime = Double.NaN;
+
+	/**
+	 * Creates a new TractionController
+	 *
+	 * @param modules
+	 *                  The swerve modules
+	 * @param locations
+	 *                  The location of each module relative to the robot center,
+	 *                  in the same order as the modules
+	 */
+	public TractionController(SwerveModule[] modules, Translation2d... locations) {
+		m_modules = modules;
+		m_moduleX = new double[modules.length];
+		m_moduleY = new double[modules.length];
+		m_speeds = new double[modules.length];
+		m_angles = new double[modules.length];
+		m_active = new boolean[modules.length];
+		m_translationX = new double[modules.length];
+		m_translationY = new double[modules.length];
+		m_slipping = new boolean[modules.length];
+		m_outputScale = new double[modules.length];
+		for (int i = 0; i < modules.length; i++) {
+			m_moduleX[i] = locations[i].getX();
+			m_moduleY[i] = locations[i].getY();
+			m_outputScale[i] = 1;
+		}
+	}
+
+	/**
+	 * Checks each module for slip and updates its output scale. Should be called
+	 * once per loop after the module angles have been read.
+	 *
+	 * @param yawRate
+	 *                     The robot's yaw rate in radians per second, CCW positive
+	 * @param accelForward
+	 *                     The robot's acceleration along its forward axis in Gs
+	 * @param accelLeft
+	 *                     The robot's acceleration along its left axis in Gs
+	 */
+	public void update(double yawRate, double accelForward, double accelLeft) {
+		for (int i = 0; i < m_modules.length; i++) {
+			SwerveModule module = m_modules[i];
+			// Without a known angle the wheel velocity can't be turned into the robot frame
+			m_active[i] = module.isActive();
+			if (m_active[i]) {
+				m_speeds[i] = module.getDriveVelocity();
+				m_angles[i] = Math.toRadians(module.getAngle());
+			}
+		}
+		update(m_speeds, m_angles, m_active, yawRate, accelForward, accelLeft, Timer.getFPGATimestamp());
+	}
+
+	/**
+	 * Checks each module for slip using the given measurements instead of reading
+	 * the modules
+	 *
+	 * @param speeds
+	 *                     Each module's drive velocity in meters per second
+	 * @param angles
+	 *                     Each module's angle in radians, CCW positive
+	 * @param active
+	 *                     Whether each module is driving. The speed and angle of
+	 *                     an inactive module are ignored.
+	 * @param yawRate
+	 *                     The robot's yaw rate in radians per second, CCW positive
+	 * @param accelForward
+	 *                     The robot's acceleration along its forward axis in Gs
+	 * @param accelLeft
+	 *                     The robot's acceleration along its left axis in Gs
+	 * @param time
+	 *                     The time of the measurements in seconds
+	 */
+	void update(double[] speeds, double[] angles, boolean[] active, double yawRate, double accelForward,
+			double accelLeft, double time) {
+		boolean first = Double.isNaN(m_lastTime);
+		double dt = first ? 0 : time - m_lastTime;
+		m_lastTime = time;
+
+		// Take the rotation out of each wheel's velocity: v_wheel = v_chassis + w x r
+		double sumX = 0;
+		double sumY = 0;
+		int activeCount = 0;
+		for (int i = 0; i < m_modules.length; i++) {
+			if (!active[i]) {
+				continue;
+			}
+			m_translationX[i] = speeds[i] * Math.cos(angles[i]) + yawRate * m_moduleY[i];
+			m_translationY[i] = speeds[i] * Math.sin(angles[i]) - yawRate * m_moduleX[i];
+			sumX += m_translationX[i];
+			sumY += m_translationY[i];
+			activeCount++;
+		}
+		// Nothing to compare against on the first loop, so start from the wheels
+		if (first && activeCount > 0) {
+			m_estimatedVx = sumX / activeCount;
+			m_estimatedVy = sumY / activeCount;
+		}
+
+		// Where the chassis should be going if nothing slipped since last loop
+		double predictedVx = m_estimatedVx + accelForward * kGravity * dt;
+		double predictedVy = m_estimatedVy + accelLeft * kGravity * dt;
+		double predictedSpeed = Math.hypot(predictedVx, predictedVy);
+
+		double gripX = 0;
+		double gripY = 0;
+		int gripCount = 0;
+		int others = activeCount - 1;
+		for (int i = 0; i < m_modules.length; i++) {
+			if (!active[i]) {
+				m_slipping[i] = false;
+				continue;
+			}
+			// Average of the other modules. If they're all spinning too, the navX
+			// prediction is used instead, so the lower of the two is trusted.
+			double expectedSpeed = predictedSpeed;
+			if (others > 0) {
+				double otherSpeed = Math.hypot((sumX - m_translationX[i]) / others,
+						(sumY - m_translationY[i]) / others);
+				expectedSpeed = Math.min(otherSpeed, predictedSpeed);
+			}
+			double speed = Math.hypot(m_translationX[i], m_translationY[i]);
+			m_slipping[i] = speed > expectedSpeed * (1 + TractionConstants.kSlipRatio)
+					+ TractionConstants.kSlipTolerance;
+			if (m_slipping[i]) {
+				m_outputScale[i] = Math.max(m_outputScale[i] * TractionConstants.kSlipCutback,
+						TractionConstants.kMinOutputScale);
+			} else {
+				m_outputScale[i] = Math.min(m_outputScale[i] + TractionConstants.kRecoveryRate * dt, 1);
+				gripX += m_translationX[i];
+				gripY += m_translationY[i];
+				gripCount++;
+			}
+		}
+
+		// Only wheels that are gripping are trusted for the next estimate
+		if (gripCount > 0) {
+			m_estimatedVx = gripX / gripCount;
+			m_estimatedVy = gripY / gripCount;
+		} else {
+			m_estimatedVx = predictedVx;
+			m_estimatedVy = predictedVy;
+		}
+		SmartDashboard.putNumber("Traction estimated speed", Math.hypot(m_estimatedVx, m_estimatedVy));
+	}
+
+	public boolean isSlipping(int module) {
+		return m_slipping[module];
+	}
+
+	/**
+	 * Gets how much of the commanded drive output a module is allowed. This drops
+	 * quickly while the module slips, and ramps back up once it grips again.
+	 *
+	 * @param module
+	 *               The index of the module
+	 * @return The output scale [{@link TractionConstants#kMinOutputScale}, 1]
+	 */
+	public double getOutputScale(int module) {
+		return m_outputScale[module];
+	}
+
+	/**
+	 * Gets the forward speed of the chassis, estimated from the modules that are
+	 * gripping
+	 *
+	 * @return The speed in meters per second
+	 */
+	public double getEstimatedVx() {
+		return m_estimatedVx;
+	}
+
+	/**
+	 * Gets the leftward speed of the chassis, estimated from the modules that are
+	 * gripping
+	 *
+	 * @return The speed in meters per second
+	 */
+	public double getEstimatedVy() {
+		return m_estimatedVy;
+	}
+}
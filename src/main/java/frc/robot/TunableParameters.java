@@ -0,0 +1,125 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import java.util.EnumSet;
+
+import edu.wpi.first.networktables.DoubleEntry;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import frc.robot.Constants.DriveConstants;
+
+/**
+ * Gains and limits that can be tuned from NetworkTables without redeploying.
+ *
+ * <p>
+ * Each {@link Parameter} is published under {@code /Tuning} as a persistent
+ * topic, so a tuned value survives a reboot, and the value in
+ * {@link Constants} is only used the first time. Changes come in through
+ * NetworkTables listeners, which build a new {@link Snapshot} and swap it in.
+ * Code reading the parameters only ever does a volatile read and an array
+ * lookup, and can tell something changed by checking if the snapshot is a
+ * different object than last time.
+ */
+public final class TunableParameters {
+	public static enum Parameter {
+		DRIVE_P("Drive/kP", DriveConstants.kP),
+		DRIVE_I("Drive/kI", DriveConstants.kI),
+		DRIVE_D("Drive/kD", DriveConstants.kD),
+		DRIVE_SCALE("Drive/kDriveScale", DriveConstants.kDriveScale),
+		MAX_VELOCITY("Drive/kMaxVelocity", DriveConstants.kMaxVelocity),
+		HEADING_P("Heading/kP", DriveConstants.kHeadingP),
+		HEADING_I("Heading/kI", DriveConstants.kHeadingI),
+		HEADING_D("Heading/kD", DriveConstants.kHeadingD);
+
+		private final String m_name;
+		private final double m_defaultValue;
+
+		private Parameter(String name, double defaultValue) {
+			m_name = name;
+			m_defaultValue = defaultValue;
+		}
+	}
+
+	/** An immutable set of parameter values. */
+	public static final class Snapshot {
+		private final double[] m_values;
+
+		private Snapshot(double[] values) {
+			m_values = values;
+		}
+
+		public double get(Parameter parameter) {
+			return m_values[parameter.ordinal()];
+		}
+	}
+
+	private static final String kTable = "/Tuning/";
+	private static final Parameter[] kParameters = Parameter.values();
+	private static final DoubleEntry[] s_entries = new DoubleEntry[kParameters.length];
+	private static volatile Snapshot s_snapshot;
+
+	static {
+		NetworkTableInstance instance = NetworkTableInstance.getDefault();
+		double[] defaults = new double[kParameters.length];
+		for (Parameter parameter : kParameters) {
+			DoubleEntry entry = instance.getDoubleTopic(kTable + parameter.m_name)
+					.getEntry(parameter.m_defaultValue);
+			entry.getTopic().setPersistent(true);
+			// Doesn't overwrite a value restored from the persistent file
+			entry.setDefault(parameter.m_defaultValue);
+			s_entries[parameter.ordinal()] = entry;
+			defaults[parameter.ordinal()] = parameter.m_defaultValue;
+		}
+		s_snapshot = new Snapshot(defaults);
+		// Listen before reading anything, so a change can't land between the read
+		// and the listener. The immediate event fills in the current values.
+		for (Parameter parameter : kParameters) {
+			instance.addListener(s_entries[parameter.ordinal()],
+					EnumSet.of(NetworkTableEvent.Kind.kImmediate, NetworkTableEvent.Kind.kValueAll),
+					event -> refresh(parameter));
+		}
+		// Listeners run on the NetworkTables thread, so read the values here as well
+		// to have them from the first loop
+		for (Parameter parameter : kParameters) {
+			refresh(parameter);
+		}
+	}
+
+	private TunableParameters() {
+	}
+
+	/**
+	 * Gets the current parameter values
+	 *
+	 * @return The current snapshot
+	 */
+	public static Snapshot get() {
+		return s_snapshot;
+	}
+
+	/**
+	 * Gets the current value of one parameter
+	 *
+	 * @param parameter
+	 *                  The parameter
+	 * @return The value
+	 */
+	public static double get(Parameter parameter) {
+		return s_snapshot.m_values[parameter.ordinal()];
+	}
+
+	// Reads the value under the lock, so whichever of the listener and the static
+	// initializer goes last sees the newest value
+	private static synchronized void refresh(Parameter parameter) {
+		double value = s_entries[parameter.ordinal()].get();
+		if (value == s_snapshot.m_values[parameter.ordinal()]) {
+			return;
+		}
+		double[] values = s_snapshot.m_values.clone();
+		values[parameter.ordinal()] = value;
+		s_snapshot = new Snapshot(values);
+	}
+}
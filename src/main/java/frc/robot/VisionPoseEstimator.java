@@ -0,0 +1,169 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.TimestampedDoubleArray;
+import frc.robot.Constants.VisionConstants;
+
+/**
+ * Fuses delayed AprilTag pose measurements with wheel odometry.
+ *
+ * <p>
+ * The odometry poses are kept in a {@link PoseHistory}, and the field pose is
+ * the odometry pose moved by a correction (the pose of the odometry origin on
+ * the field). A vision measurement is compared against the pose recorded when
+ * the camera captured the frame, and only the correction is updated, so
+ * nothing in the history has to be replayed and the cost per measurement
+ * doesn't depend on the camera latency.
+ *
+ * <p>
+ * Measurements are read from a double array topic laid out as
+ * {@code [x, y, rotation in degrees, latency in seconds, distance to the
+ * closest tag in meters, tag count]}.
+ */
+public class VisionPoseEstimator {
+	private final PoseHistory m_odometryHistory = new PoseHistory(VisionConstants.kHistorySize);
+	private final DoubleArraySubscriber m_subscriber;
+	private Pose2d m_odometryPose = new Pose2d();
+	private Pose2d m_origin = new Pose2d();
+	// The origin from the last reset, without any vision corrections
+	private Pose2d m_resetOrigin = new Pose2d();
+
+	/** Creates a new VisionPoseEstimator. */
+	public VisionPoseEstimator() {
+		// Keep every measurement that arrives between loops, not just the newest
+		m_subscriber = NetworkTableInstance.getDefault().getDoubleArrayTopic(VisionConstants.kPoseTopic)
+				.subscribe(new double[0], PubSubOption.keepDuplicates(true), PubSubOption.pollStorage(10));
+	}
+
+	/**
+	 * Records a new odometry pose. Should be called every loop.
+	 *
+	 * @param time
+	 *                     The FPGA time of the pose in seconds
+	 * @param odometryPose
+	 *                     The pose from wheel odometry
+	 */
+	public void addOdometry(double time, Pose2d odometryPose) {
+		m_odometryPose = odometryPose;
+		m_odometryHistory.add(time, odometryPose);
+	}
+
+	/**
+	 * Gets the fused pose on the field
+	 *
+	 * @return The pose
+	 */
+	public Pose2d getPose() {
+		return toField(m_odometryPose);
+	}
+
+	/**
+	 * Moves the fused pose to a known pose on the field
+	 *
+	 * @param pose
+	 *             The new pose
+	 */
+	public void resetPose(Pose2d pose) {
+		m_origin = originFor(pose, m_odometryPose);
+		m_resetOrigin = m_origin;
+	}
+
+	/**
+	 * Gets the pose from the last reset moved by the odometry since, without any
+	 * vision corrections. The simulated camera uses this as the true pose.
+	 *
+	 * @return The pose
+	 */
+	public Pose2d getDeadReckonedPose() {
+		return m_resetOrigin.transformBy(new Transform2d(m_odometryPose.getTranslation(),
+				m_odometryPose.getRotation()));
+	}
+
+	/**
+	 * Applies every vision measurement published since the last call
+	 */
+	public void update() {
+		for (TimestampedDoubleArray measurement : m_subscriber.readQueue()) {
+			double[] value = measurement.value;
+			if (value.length < 6) {
+				continue;
+			}
+			// NetworkTables timestamps are in microseconds
+			double captureTime = measurement.timestamp / 1e6 - value[3];
+			addVisionMeasurement(new Pose2d(value[0], value[1], Rotation2d.fromDegrees(value[2])), captureTime,
+					value[4], (int) value[5]);
+		}
+	}
+
+	/**
+	 * Corrects the fused pose with a vision measurement. The measurement is
+	 * trusted less the further away the tags are, and more the more tags are
+	 * seen.
+	 *
+	 * @param visionPose
+	 *                    The robot pose measured by the camera
+	 * @param captureTime
+	 *                    The FPGA time the frame was captured in seconds
+	 * @param tagDistance
+	 *                    The distance to the closest tag in meters
+	 * @param tagCount
+	 *                    The number of tags used for the measurement
+	 * @return True if the measurement was used
+	 */
+	public boolean addVisionMeasurement(Pose2d visionPose, double captureTime, double tagDistance, int tagCount) {
+		if (tagCount < 1 || tagDistance > VisionConstants.kMaxTagDistance
+				|| !(captureTime >= m_odometryHistory.getOldestTime())) {
+			return false;
+		}
+		Pose2d odometryAtCapture = m_odometryHistory.sample(captureTime);
+		Pose2d fusedAtCapture = toField(odometryAtCapture);
+
+		// Steady state Kalman gain for each axis, with the vision standard deviation
+		// growing with the square of the tag distance
+		double distanceScale = (1 + tagDistance * tagDistance * VisionConstants.kStdDevPerMeterSquared) / tagCount;
+		double translationGain = gain(VisionConstants.kOdometryTranslationStdDev,
+				VisionConstants.kVisionTranslationStdDev * distanceScale);
+		double rotationGain = gain(VisionConstants.kOdometryRotationStdDev,
+				VisionConstants.kVisionRotationStdDev * distanceScale);
+
+		Pose2d correctedAtCapture = new Pose2d(
+				fusedAtCapture.getTranslation().interpolate(visionPose.getTranslation(), translationGain),
+				fusedAtCapture.getRotation()
+						.plus(visionPose.getRotation().minus(fusedAtCapture.getRotation()).times(rotationGain)));
+		// Move the origin so the pose at capture time lands on the corrected pose. The
+		// odometry since then is carried along with it.
+		m_origin = originFor(correctedAtCapture, odometryAtCapture);
+		return true;
+	}
+
+	/**
+	 * Gets the pose history the vision measurements are matched against
+	 *
+	 * @return The odometry pose history
+	 */
+	public PoseHistory getOdometryHistory() {
+		return m_odometryHistory;
+	}
+
+	private Pose2d toField(Pose2d odometryPose) {
+		return m_origin.transformBy(new Transform2d(odometryPose.getTranslation(), odometryPose.getRotation()));
+	}
+
+	private static Pose2d originFor(Pose2d fieldPose, Pose2d odometryPose) {
+		return fieldPose.transformBy(new Transform2d(odometryPose, new Pose2d()));
+	}
+
+	private static double gain(double odometryStdDev, double visionStdDev) {
+		double q = odometryStdDev * odometryStdDev;
+		return q / (q + visionStdDev * visionStdDev);
+	}
+}
@@ -7,14 +7,16 @@ package frc.robot.commands;
 import java.util.function.Supplier;
 
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.filter.SlewRateLimiter;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
-import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.TunableParameters;
 import frc.robot.Constants.ControllerConstants;
 import frc.robot.Constants.DriveConstants;
+import frc.robot.TunableParameters.Parameter;
 import frc.robot.subsystems.DriveSubsystem;
 
 /**
@@ -29,9 +31,21 @@ public class DefaultDriveCommand extends Command {
 	private Supplier<Double> m_yAxisDrive;
 	private Supplier<Double> m_xAxisDrive;
 	private Supplier<Double> m_rotationAxis;
-	private double m_trackWidth;
-	private double m_wheelBase;
-	private SwerveDriveKinematics m_kinematics;
+	// Holds the heading when the rotation stick is released, and turns to snap
+	// headings. Works in radians.
+	private final ProfiledPIDController m_headingController = new ProfiledPIDController(DriveConstants.kHeadingP,
+			DriveConstants.kHeadingI, DriveConstants.kHeadingD,
+			new TrapezoidProfile.Constraints(DriveConstants.kMaxAngularSpeed,
+					DriveConstants.kMaxAngularAcceleration),
+			DriveConstants.kSteerPeriod);
+	private boolean m_headingLocked = false;
+	// Limit how fast the field relative speeds can change, so the robot doesn't
+	// tip and the counterweight knows what acceleration is coming
+	private final SlewRateLimiter m_fwdLimiter = new SlewRateLimiter(DriveConstants.kMaxDriveAcceleration);
+	private final SlewRateLimiter m_strLimiter = new SlewRateLimiter(DriveConstants.kMaxDriveAcceleration);
+	private double m_lastFwdSpeed;
+	private double m_lastStrSpeed;
+	private TunableParameters.Snapshot m_parameters;
 
 	public DefaultDriveCommand(DriveSubsystem driveSubsystem, Supplier<Double> xAxisDrive, Supplier<Double> yAxisDrive,
 			Supplier<Double> rotationAxis) {
@@ -39,22 +53,37 @@ public class DefaultDriveCommand extends Command {
 		m_yAxisDrive = yAxisDrive;
 		m_xAxisDrive = xAxisDrive;
 		m_rotationAxis = rotationAxis;
+		m_headingController.enableContinuousInput(-Math.PI, Math.PI);
 		addRequirements(m_driveSubsystem);
 	}
 
 	@Override
 	public void initialize() {
-		m_trackWidth = DriveConstants.kTrackWidth;
-		m_wheelBase = DriveConstants.kWheelBase;
-		// Locations for the swerve drive modules relative to the robot center.
-		Translation2d m_frontLeftLocation = new Translation2d(0.381, 0.381);
-		Translation2d m_frontRightLocation = new Translation2d(0.381, -0.381);
-		Translation2d m_backLeftLocation = new Translation2d(-0.381, 0.381);
-		Translation2d m_backRightLocation = new Translation2d(-0.381, -0.381);
+		m_headingLocked = false;
+		m_fwdLimiter.reset(0);
+		m_strLimiter.reset(0);
+		m_lastFwdSpeed = 0;
+		m_lastStrSpeed = 0;
+	}
 
-		// Creating my kinematics object using the module locations
-		m_kinematics = new SwerveDriveKinematics(
-				m_frontLeftLocation, m_frontRightLocation, m_backLeftLocation, m_backRightLocation);
+	/**
+	 * Turns the robot to a heading, and holds it there until the driver uses the
+	 * rotation stick
+	 * 
+	 * @param heading
+	 *                The field relative heading in degrees, CCW positive
+	 */
+	public void snapToHeading(double heading) {
+		lockHeading(Math.toRadians(heading));
+	}
+
+	private void lockHeading(double heading) {
+		// Start the profile from where the robot is now, so a snap while spinning
+		// doesn't jerk
+		m_headingController.reset(Math.toRadians(m_driveSubsystem.getHeading()),
+				Math.toRadians(m_driveSubsystem.getTurnRate()));
+		m_headingController.setGoal(heading);
+		m_headingLocked = true;
 	}
 
 	/**
@@ -70,14 +99,48 @@ public class DefaultDriveCommand extends Command {
 		double fwdSpeed = MathUtil.applyDeadband(m_yAxisDrive.get(), ControllerConstants.kDeadzone);
 		double strSpeed = MathUtil.applyDeadband(m_xAxisDrive.get(), ControllerConstants.kDeadzone);
 		double rotSpeed = MathUtil.applyDeadband(m_rotationAxis.get(), ControllerConstants.kDeadzone);
+		double heading = m_driveSubsystem.getHeading();
+		fwdSpeed = m_fwdLimiter.calculate(fwdSpeed);
+		strSpeed = m_strLimiter.calculate(strSpeed);
+		// The rate limited change in speed is the acceleration the robot is being
+		// asked for. The sticks are in drive speed units, so it is scaled to meters
+		// per second squared and turned from the field to the robot frame.
+		double metersPerUnit = DriveSubsystem.getMetersPerSecondPerUnit();
+		double fieldAccelX = (fwdSpeed - m_lastFwdSpeed) / DriveConstants.kSteerPeriod * metersPerUnit;
+		double fieldAccelY = (strSpeed - m_lastStrSpeed) / DriveConstants.kSteerPeriod * metersPerUnit;
+		m_lastFwdSpeed = fwdSpeed;
+		m_lastStrSpeed = strSpeed;
+		Rotation2d robotHeading = Rotation2d.fromDegrees(heading);
+		double accelX = fieldAccelX * robotHeading.getCos() + fieldAccelY * robotHeading.getSin();
+		double accelY = -fieldAccelX * robotHeading.getSin() + fieldAccelY * robotHeading.getCos();
+
+		if (rotSpeed != 0) {
+			// The driver is turning, so let go of the heading
+			m_headingLocked = false;
+		} else if (m_headingLocked) {
+			TunableParameters.Snapshot parameters = TunableParameters.get();
+			if (parameters != m_parameters) {
+				m_parameters = parameters;
+				m_headingController.setPID(parameters.get(Parameter.HEADING_P),
+						parameters.get(Parameter.HEADING_I), parameters.get(Parameter.HEADING_D));
+			}
+			// Follow the profile, using its velocity as the yaw rate feedforward
+			rotSpeed = m_headingController.calculate(Math.toRadians(heading))
+					+ m_headingController.getSetpoint().velocity;
+			rotSpeed = MathUtil.clamp(rotSpeed, -DriveConstants.kMaxAngularSpeed, DriveConstants.kMaxAngularSpeed);
+			// The controller works in radians per second, but the drive takes units
+			rotSpeed /= metersPerUnit;
+		} else if (Math.abs(m_driveSubsystem.getTurnRate()) < DriveConstants.kHeadingLockRate) {
+			// Wait for the robot to stop turning before locking, otherwise it would be
+			// pulled back to where the stick was released
+			lockHeading(Math.toRadians(heading));
+		}
 
 		ChassisSpeeds speeds = ChassisSpeeds.fromFieldRelativeSpeeds(
-				fwdSpeed, strSpeed, rotSpeed, Rotation2d.fromDegrees(DriveSubsystem.get().getHeading()));
+				fwdSpeed, strSpeed, rotSpeed, robotHeading);
 
 		// Now use this in our kinematics
-		SwerveModuleState[] moduleStates = m_kinematics.toSwerveModuleStates(speeds);
-
-		DriveSubsystem.get().setSwerveStates(moduleStates);
+		m_driveSubsystem.drive(speeds, accelX, accelY);
 
 		/*
 		 * double leftStickMagnitude = Math.sqrt( fwdSpeed * fwdSpeed + strSpeed *
@@ -0,0 +1,117 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+import java.util.function.Supplier;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.HolonomicPathGenerator;
+import frc.robot.Constants.DriveToPoseConstants;
+import frc.robot.subsystems.DriveSubsystem;
+
+/**
+ * Drives to a pose on the field along a path planned when the command starts.
+ * If the target moves, the path is replanned from where the robot is supposed
+ * to be on the old path, so the robot doesn't jerk.
+ */
+public class DriveToPoseCommand extends Command {
+	private final DriveSubsystem m_driveSubsystem;
+	private final Supplier<Pose2d> m_targetSupplier;
+	private final HolonomicPathGenerator m_path = new HolonomicPathGenerator();
+	private final Timer m_timer = new Timer();
+	private Pose2d m_target;
+
+	/***
+	 * Drives to a pose on the field
+	 *
+	 * @param driveSubsystem
+	 *                       The drive subsystem
+	 * @param targetSupplier
+	 *                       Supplies the pose to drive to, checked every loop
+	 */
+	public DriveToPoseCommand(DriveSubsystem driveSubsystem, Supplier<Pose2d> targetSupplier) {
+		m_driveSubsystem = driveSubsystem;
+		m_targetSupplier = targetSupplier;
+		addRequirements(m_driveSubsystem);
+	}
+
+	@Override
+	public void initialize() {
+		m_target = m_targetSupplier.get();
+		Pose2d pose = m_driveSubsystem.getPose();
+		// Start from the speeds the robot was last told to go, turned to the field.
+		// They are in drive units, so convert them to meters per second for the path.
+		ChassisSpeeds speeds = m_driveSubsystem.getCommandedSpeeds()
+				.times(DriveSubsystem.getMetersPerSecondPerUnit());
+		double cos = pose.getRotation().getCos();
+		double sin = pose.getRotation().getSin();
+		generate(pose, speeds.vxMetersPerSecond * cos - speeds.vyMetersPerSecond * sin,
+				speeds.vxMetersPerSecond * sin + speeds.vyMetersPerSecond * cos, speeds.omegaRadiansPerSecond);
+		m_timer.reset();
+		m_timer.start();
+	}
+
+	private void generate(Pose2d start, double vx, double vy, double omega) {
+		long startTime = RobotController.getFPGATime();
+		m_path.generate(start, vx, vy, omega, m_target, DriveToPoseConstants.kMaxSpeed,
+				DriveToPoseConstants.kMaxAcceleration, DriveToPoseConstants.kMaxAngularSpeed,
+				DriveToPoseConstants.kMaxAngularAcceleration, DriveToPoseConstants.kAcrossShare);
+		SmartDashboard.putNumber("Drive to pose plan time (us)", RobotController.getFPGATime() - startTime);
+	}
+
+	@Override
+	public void execute() {
+		m_path.sample(m_timer.get());
+		Pose2d target = m_targetSupplier.get();
+		if (target.getTranslation().getDistance(m_target.getTranslation()) > DriveToPoseConstants.kReplanDistance
+				|| Math.abs(target.getRotation().minus(m_target.getRotation())
+						.getDegrees()) > DriveToPoseConstants.kReplanAngle) {
+			// Replan from where the robot should be right now on the old path
+			m_target = target;
+			generate(new Pose2d(m_path.getX(), m_path.getY(), new Rotation2d(m_path.getHeading())),
+					m_path.getVx(), m_path.getVy(), m_path.getOmega());
+			m_timer.reset();
+			m_path.sample(0);
+		}
+
+		// Follow the path, with feedback on the position and heading error
+		Pose2d pose = m_driveSubsystem.getPose();
+		double vx = m_path.getVx() + DriveToPoseConstants.kTranslationP * (m_path.getX() - pose.getX());
+		double vy = m_path.getVy() + DriveToPoseConstants.kTranslationP * (m_path.getY() - pose.getY());
+		double omega = m_path.getOmega() + DriveToPoseConstants.kRotationP
+				* MathUtil.angleModulus(m_path.getHeading() - pose.getRotation().getRadians());
+		// The path's acceleration is limited by the profiles, so it can be passed on
+		// as the acceleration feedforward, turned to the robot frame
+		double cos = pose.getRotation().getCos();
+		double sin = pose.getRotation().getSin();
+		double accelX = m_path.getAx() * cos + m_path.getAy() * sin;
+		double accelY = -m_path.getAx() * sin + m_path.getAy() * cos;
+		// The path is planned in meters, and the drive is open loop in drive units
+		m_driveSubsystem.driveMetersPerSecond(
+				ChassisSpeeds.fromFieldRelativeSpeeds(vx, vy, omega, pose.getRotation()), accelX, accelY);
+	}
+
+	@Override
+	public boolean isFinished() {
+		Pose2d pose = m_driveSubsystem.getPose();
+		return m_timer.get() >= m_path.getTotalTime()
+				&& pose.getTranslation().getDistance(
+						m_target.getTranslation()) < DriveToPoseConstants.kPositionTolerance
+				&& Math.abs(pose.getRotation().minus(m_target.getRotation())
+						.getDegrees()) < DriveToPoseConstants.kAngleTolerance;
+	}
+
+	@Override
+	public void end(boolean interrupted) {
+		m_driveSubsystem.drive(new ChassisSpeeds());
+	}
+}
@@ -0,0 +1,66 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.sim;
+
+import java.util.Random;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.PoseHistory;
+import frc.robot.Constants.VisionConstants;
+import frc.robot.subsystems.DriveSubsystem;
+
+/**
+ * Stands in for the AprilTag camera when there isn't one. Publishes noisy
+ * robot poses to the same topic the real camera uses, with the same latency a
+ * real camera would have, so the vision fusion can be tested in simulation.
+ *
+ * <p>
+ * The true pose is the pose from the last reset moved by the odometry, kept in
+ * its own history. Vision corrections don't move it, so the camera doesn't pull
+ * the fused pose back towards where the odometry started.
+ */
+public class SimVisionPublisher extends SubsystemBase {
+	private final DriveSubsystem m_driveSubsystem;
+	private final DoubleArrayPublisher m_publisher = NetworkTableInstance.getDefault()
+			.getDoubleArrayTopic(VisionConstants.kPoseTopic).publish();
+	private final PoseHistory m_trueHistory = new PoseHistory(VisionConstants.kHistorySize);
+	private final Random m_random = new Random();
+	private final double[] m_value = new double[6];
+	private int m_loopCount = 0;
+
+	/** Creates a new SimVisionPublisher. */
+	public SimVisionPublisher(DriveSubsystem driveSubsystem) {
+		m_driveSubsystem = driveSubsystem;
+	}
+
+	@Override
+	public void simulationPeriodic() {
+		double now = Timer.getFPGATimestamp();
+		m_trueHistory.add(now, m_driveSubsystem.getPoseEstimator().getDeadReckonedPose());
+		if (++m_loopCount < VisionConstants.kSimPublishLoops) {
+			return;
+		}
+		m_loopCount = 0;
+		// The camera sees where the robot was one latency ago
+		Pose2d pose = m_trueHistory.sample(now - VisionConstants.kSimLatency);
+		if (pose == null) {
+			return;
+		}
+		double distance = VisionConstants.kSimTagDistance;
+		double noiseScale = 1 + distance * distance * VisionConstants.kStdDevPerMeterSquared;
+		m_value[0] = pose.getX() + m_random.nextGaussian() * VisionConstants.kVisionTranslationStdDev * noiseScale;
+		m_value[1] = pose.getY() + m_random.nextGaussian() * VisionConstants.kVisionTranslationStdDev * noiseScale;
+		m_value[2] = pose.getRotation().getDegrees()
+				+ Math.toDegrees(m_random.nextGaussian() * VisionConstants.kVisionRotationStdDev * noiseScale);
+		m_value[3] = VisionConstants.kSimLatency;
+		m_value[4] = distance;
+		m_value[5] = 1;
+		m_publisher.set(m_value);
+	}
+}
@@ -0,0 +1,125 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import com.kauailabs.navx.frc.AHRS;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.CANSparkMaxLowLevel.MotorType;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.controller.SimpleMotorFeedforward;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.simulation.ElevatorSim;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.SwerveModule;
+import frc.robot.Constants.CounterWeightConstants;
+import frc.robot.Constants.DriveConstants;
+
+/**
+ * Slides a counterweight to cancel out the tipping moment from accelerating.
+ * The target position comes from the acceleration the drive command is asking
+ * for, so the weight starts moving before the robot does, plus a correction
+ * from the navX pitch and roll for any tilt that still gets through.
+ */
+public class CounterWeightSubsystem extends SubsystemBase {
+	private static final double kGravity = 9.81;
+
+	private final DriveSubsystem m_driveSubsystem;
+	private final CANSparkMax m_motor = new CANSparkMax(DriveConstants.kCounterWeightPort, MotorType.kBrushless);
+	private final RelativeEncoder m_encoder = m_motor.getEncoder();
+	private final ProfiledPIDController m_controller = new ProfiledPIDController(CounterWeightConstants.kP,
+			CounterWeightConstants.kI, CounterWeightConstants.kD,
+			new TrapezoidProfile.Constraints(CounterWeightConstants.kMaxVelocity,
+					CounterWeightConstants.kMaxAcceleration),
+			DriveConstants.kSteerPeriod);
+	private final SimpleMotorFeedforward m_feedforward = new SimpleMotorFeedforward(CounterWeightConstants.kS,
+			CounterWeightConstants.kV, CounterWeightConstants.kA);
+	private final double m_axisCos = Math.cos(Math.toRadians(CounterWeightConstants.kAxisAngle));
+	private final double m_axisSin = Math.sin(Math.toRadians(CounterWeightConstants.kAxisAngle));
+	private double m_lastSetpointVelocity;
+	private double m_appliedVolts;
+	private ElevatorSim m_sim;
+
+	/** Creates a new CounterWeightSubsystem. */
+	public CounterWeightSubsystem(DriveSubsystem driveSubsystem) {
+		m_driveSubsystem = driveSubsystem;
+		SwerveModule.configMotorController(m_motor);
+		m_encoder.setPositionConversionFactor(CounterWeightConstants.kMetersPerMotorRev);
+		// Velocity is reported in RPM, so divide by 60 to get meters per second
+		m_encoder.setVelocityConversionFactor(CounterWeightConstants.kMetersPerMotorRev / 60);
+		// The weight should be centered when the robot turns on
+		m_encoder.setPosition(0);
+		m_controller.reset(0);
+		if (RobotBase.isSimulation()) {
+			// A horizontal slide, so gravity doesn't act along the direction of travel
+			m_sim = new ElevatorSim(DCMotor.getNEO(1), CounterWeightConstants.kGearRatio,
+					CounterWeightConstants.kMass, CounterWeightConstants.kDrumRadius,
+					-CounterWeightConstants.kMaxTravel, CounterWeightConstants.kMaxTravel, false, 0);
+		}
+	}
+
+	/**
+	 * Gets the position of the counterweight
+	 *
+	 * @return The distance from the robot center in meters, positive along the
+	 *         counterweight axis
+	 */
+	public double getPosition() {
+		return m_encoder.getPosition();
+	}
+
+	/**
+	 * Works out where the counterweight needs to be. Accelerating along the axis
+	 * pushes the center of gravity backwards, so the weight moves forwards by
+	 * enough to balance the moment: x = (robot mass * CG height * a) / (weight
+	 * mass * g).
+	 *
+	 * @return The target position in meters
+	 */
+	public double calculateTargetPosition() {
+		double accel = m_driveSubsystem.getCommandedAccelX() * m_axisCos
+				+ m_driveSubsystem.getCommandedAccelY() * m_axisSin;
+		// Nose up pitch and left side up roll both mean the robot is tipping away from
+		// the positive end of their axes
+		AHRS gyro = m_driveSubsystem.getNavx();
+		double tilt = gyro.getPitch() * m_axisCos - gyro.getRoll() * m_axisSin;
+		double target = CounterWeightConstants.kRobotMass * CounterWeightConstants.kCenterOfGravityHeight * accel
+				/ (CounterWeightConstants.kMass * kGravity)
+				+ CounterWeightConstants.kTiltGain * tilt;
+		return MathUtil.clamp(target, -CounterWeightConstants.kMaxTravel, CounterWeightConstants.kMaxTravel);
+	}
+
+	/***
+	 * Moves the counterweight towards its target using the motion profile, with
+	 * velocity and acceleration feedforward from the profile setpoint
+	 */
+	@Override
+	public void periodic() {
+		double target = calculateTargetPosition();
+		double pidOutput = m_controller.calculate(getPosition(), target);
+		TrapezoidProfile.State setpoint = m_controller.getSetpoint();
+		double setpointAccel = (setpoint.velocity - m_lastSetpointVelocity) / DriveConstants.kSteerPeriod;
+		m_lastSetpointVelocity = setpoint.velocity;
+		m_appliedVolts = MathUtil.clamp(pidOutput + m_feedforward.calculate(setpoint.velocity, setpointAccel),
+				-12, 12);
+		m_motor.setVoltage(m_appliedVolts);
+		SmartDashboard.putNumber("Counterweight target", target);
+		SmartDashboard.putNumber("Counterweight position", getPosition());
+	}
+
+	@Override
+	public void simulationPeriodic() {
+		m_sim.setInputVoltage(m_appliedVolts);
+		m_sim.update(DriveConstants.kSteerPeriod);
+		// Feed the simulated slide back through the encoder, so the controller runs
+		// on the same reading it would on the robot
+		m_encoder.setPosition(m_sim.getPositionMeters());
+	}
+}
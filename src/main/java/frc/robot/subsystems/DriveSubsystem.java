@@ -6,23 +6,48 @@ package frc.robot.subsystems;
 
 import com.kauailabs.navx.frc.AHRS;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.filter.MedianFilter;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.wpilibj.SPI;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.DriveHealthMonitor;
 import frc.robot.SwerveModule;
+import frc.robot.SwerveSensorSnapshot;
+import frc.robot.TractionController;
+import frc.robot.TunableParameters;
+import frc.robot.VisionPoseEstimator;
 import frc.robot.Constants.DriveConstants;
 import frc.robot.Constants.SwerveConstants;
+import frc.robot.TunableParameters.Parameter;
 
 public class DriveSubsystem extends SubsystemBase {
 	private SwerveModule m_frontLeftSwerveModule;
 	private SwerveModule m_frontRightSwerveModule;
 	private SwerveModule m_backLeftSwerveModule;
 	private SwerveModule m_backRightSwerveModule;
+	private SwerveModule[] m_modules;
+	private SwerveSensorSnapshot m_sensors;
+	private DriveHealthMonitor m_healthMonitor;
+	private TractionController m_tractionController;
+	private SwerveDriveOdometry m_odometry;
+	private VisionPoseEstimator m_poseEstimator = new VisionPoseEstimator();
 	private static DriveSubsystem s_subsystem;
 	private AHRS m_gyro = new AHRS(SPI.Port.kMXP);
 	private MedianFilter filter = new MedianFilter(5);
+	// Subtracted from the navX yaw, so the heading can be zeroed without waiting
+	// on the navX
+	private double m_headingOffset = 0;
+	private boolean m_odometryStarted = false;
+	private ChassisSpeeds m_commandedSpeeds = new ChassisSpeeds();
+	private double m_commandedAccelX;
+	private double m_commandedAccelY;
 
 	/** Creates a new DriveSubsystem. */
 	public DriveSubsystem() {
@@ -66,6 +91,14 @@ public class DriveSubsystem extends SubsystemBase {
 					SwerveConstants.BackRightZero,
 					DriveConstants.kBackRightDriveInverted);
 		}
+		// Same order as the kinematics
+		m_modules = new SwerveModule[] { m_frontLeftSwerveModule, m_frontRightSwerveModule,
+				m_backLeftSwerveModule, m_backRightSwerveModule };
+		m_sensors = new SwerveSensorSnapshot(m_modules);
+		m_healthMonitor = new DriveHealthMonitor(m_modules);
+		m_tractionController = new TractionController(m_modules, DriveConstants.kFrontLeftLocation,
+				DriveConstants.kFrontRightLocation, DriveConstants.kBackLeftLocation,
+				DriveConstants.kBackRightLocation);
 		new Thread(() -> {
 			try {
 				Thread.sleep(1000);
@@ -74,21 +107,114 @@ public class DriveSubsystem extends SubsystemBase {
 			}
 		});
 		resetEncoders();
+		m_sensors.sample();
+		m_odometry = new SwerveDriveOdometry(DriveConstants.kDriveKinematics, Rotation2d.fromDegrees(getHeading()),
+				getModulePositions());
 	}
 
 	double oldVal;
 
 	public double getHeading() {
-		return -m_gyro.getYaw();
+		return MathUtil.inputModulus(-m_gyro.getYaw() - m_headingOffset, -180, 180);
 		// return filter.calculate(-m_gyro.getYaw());
 	}
 
+	/**
+	 * Gets how fast the robot is turning
+	 * 
+	 * @return The yaw rate in degrees per second, CCW positive
+	 */
+	public double getTurnRate() {
+		return -m_gyro.getRate();
+	}
+
+	/**
+	 * Gets the robot's acceleration along its forward axis, from the navX. The
+	 * navX world linear acceleration has gravity taken out, but is in the frame
+	 * its yaw is measured from rather than the robot frame. The board axes are
+	 * mapped to forward and left by {@link DriveConstants#kNavxForwardSign} and
+	 * {@link DriveConstants#kNavxLeftSign}, then turned into the robot frame by the
+	 * navX yaw. The yaw is CW positive, so the CCW angle is -yaw. The heading
+	 * offset isn't used, since the navX frame doesn't move when the heading is
+	 * zeroed.
+	 * 
+	 * @return The acceleration in Gs, forward positive
+	 */
+	public double getAccelForward() {
+		double yaw = Math.toRadians(-m_gyro.getYaw());
+		return getNavxAccelForward() * Math.cos(yaw) + getNavxAccelLeft() * Math.sin(yaw);
+	}
+
+	/**
+	 * Gets the robot's acceleration along its left axis, from the navX. See
+	 * {@link #getAccelForward()} for the axes.
+	 * 
+	 * @return The acceleration in Gs, left positive
+	 */
+	public double getAccelLeft() {
+		double yaw = Math.toRadians(-m_gyro.getYaw());
+		return -getNavxAccelForward() * Math.sin(yaw) + getNavxAccelLeft() * Math.cos(yaw);
+	}
+
+	private double getNavxAccelForward() {
+		return DriveConstants.kNavxForwardSign * m_gyro.getWorldLinearAccelX();
+	}
+
+	private double getNavxAccelLeft() {
+		return DriveConstants.kNavxLeftSign * m_gyro.getWorldLinearAccelY();
+	}
+
 	public AHRS getNavx() {
 		return m_gyro;
 	}
 
+	/**
+	 * Makes the robot's current heading read zero. The navX zeroes its yaw
+	 * asynchronously, so reading it right after {@link AHRS#reset()} can still
+	 * give the old yaw. The heading is offset in software instead, so the odometry
+	 * is reset with the new heading straight away.
+	 */
 	public void resetHeading() {
-		m_gyro.reset();
+		m_headingOffset = -m_gyro.getYaw();
+		resetOdometry();
+	}
+
+	/**
+	 * Gets the pose of the robot on the field, from odometry corrected by vision
+	 * 
+	 * @return The pose
+	 */
+	public Pose2d getPose() {
+		return m_poseEstimator.getPose();
+	}
+
+	/**
+	 * Gets the pose of the robot from wheel odometry alone
+	 * 
+	 * @return The pose
+	 */
+	public Pose2d getOdometryPose() {
+		return m_odometry.getPoseMeters();
+	}
+
+	/**
+	 * Moves the robot's pose on the field to a known pose
+	 * 
+	 * @param pose
+	 *             The new pose
+	 */
+	public void resetPose(Pose2d pose) {
+		m_poseEstimator.resetPose(pose);
+	}
+
+	public VisionPoseEstimator getPoseEstimator() {
+		return m_poseEstimator;
+	}
+
+	public SwerveModulePosition[] getModulePositions() {
+		return new SwerveModulePosition[] { m_frontLeftSwerveModule.getPosition(),
+				m_frontRightSwerveModule.getPosition(), m_backLeftSwerveModule.getPosition(),
+				m_backRightSwerveModule.getPosition() };
 	}
 
 	public static DriveSubsystem get() {
@@ -97,10 +223,35 @@ public class DriveSubsystem extends SubsystemBase {
 
 	public void resetEncoders() {
 		// Zero drive encoders
-		m_frontLeftSwerveModule.getDriveEncoder().setPosition(0);
-		m_frontRightSwerveModule.getDriveEncoder().setPosition(0);
-		m_backLeftSwerveModule.getDriveEncoder().setPosition(0);
-		m_backRightSwerveModule.getDriveEncoder().setPosition(0);
+		m_frontLeftSwerveModule.resetDrivePosition();
+		m_frontRightSwerveModule.resetDrivePosition();
+		m_backLeftSwerveModule.resetDrivePosition();
+		m_backRightSwerveModule.resetDrivePosition();
+		resetOdometry();
+	}
+
+	/**
+	 * Keeps the odometry pose where it is after the encoders or gyro are reset, so
+	 * the pose history doesn't jump
+	 */
+	private void resetOdometry() {
+		if (m_odometry != null) {
+			m_odometry.resetPosition(Rotation2d.fromDegrees(getHeading()), getModulePositions(),
+					m_odometry.getPoseMeters());
+		}
+	}
+
+	/**
+	 * Gets the total current drawn by the drive motors. This only reads the
+	 * SPARK MAXes' cached status frames, so it is cheap to call every loop.
+	 * 
+	 * @return The sum of the drive motor output currents in amps
+	 */
+	public double getDriveCurrent() {
+		return m_frontLeftSwerveModule.getDriveMotor().getOutputCurrent()
+				+ m_frontRightSwerveModule.getDriveMotor().getOutputCurrent()
+				+ m_backLeftSwerveModule.getDriveMotor().getOutputCurrent()
+				+ m_backRightSwerveModule.getDriveMotor().getOutputCurrent();
 	}
 
 	public void setWheelRotationToZeroDegrees() {
@@ -121,10 +272,12 @@ public class DriveSubsystem extends SubsystemBase {
 	 */
 	public void setDriveMotors(double frontLeftSpeed, double frontRightSpeed, double backLeftSpeed,
 			double backRightSpeed) {
-		m_frontLeftSwerveModule.getDriveMotor().set(frontLeftSpeed * DriveConstants.kDriveScale);
-		m_frontRightSwerveModule.getDriveMotor().set(frontRightSpeed * DriveConstants.kDriveScale);
-		m_backLeftSwerveModule.getDriveMotor().set(backLeftSpeed * DriveConstants.kDriveScale);
-		m_backRightSwerveModule.getDriveMotor().set(backRightSpeed * DriveConstants.kDriveScale);
+		// Goes through the modules so disabled modules stay off
+		double driveScale = TunableParameters.get(Parameter.DRIVE_SCALE);
+		m_frontLeftSwerveModule.setDriveOutput(frontLeftSpeed * driveScale);
+		m_frontRightSwerveModule.setDriveOutput(frontRightSpeed * driveScale);
+		m_backLeftSwerveModule.setDriveOutput(backLeftSpeed * driveScale);
+		m_backRightSwerveModule.setDriveOutput(backRightSpeed * driveScale);
 	}
 
 	/***
@@ -147,9 +300,135 @@ public class DriveSubsystem extends SubsystemBase {
 		m_backRightSwerveModule.getPIDController().setSetpoint(backRightAngle);
 	}
 
-	public void setSwerveStates(SwerveModuleState[] moduleStates) {
+	/**
+	 * Gets how fast the robot drives for each unit of drive speed. The drive is
+	 * open loop, so a speed of 1 is the drive scale as a duty cycle, which is about
+	 * that fraction of the free speed.
+	 * 
+	 * @return The meters per second of one unit of drive speed
+	 */
+	public static double getMetersPerSecondPerUnit() {
+		return SwerveConstants.kMaxWheelSpeed * TunableParameters.get(Parameter.DRIVE_SCALE);
+	}
+
+	/**
+	 * Drives the robot at the given robot relative speeds, with no acceleration
+	 * feedforward. Use this from commands that don't limit their acceleration.
+	 * 
+	 * @param speeds
+	 *               The robot relative speeds to drive at
+	 */
+	public void drive(ChassisSpeeds speeds) {
+		drive(speeds, 0, 0);
+	}
+
+	/**
+	 * Drives the robot at the given robot relative speeds, and keeps track of the
+	 * acceleration the command is asking for so other subsystems can react before
+	 * the robot actually accelerates
+	 * 
+	 * @param speeds
+	 *               The robot relative speeds to drive at
+	 * @param accelX
+	 *               The commanded acceleration along the robot's forward axis in
+	 *               meters per second squared, from the command's rate limit or
+	 *               motion profile
+	 * @param accelY
+	 *               The commanded acceleration along the robot's left axis in
+	 *               meters per second squared
+	 */
+	public void drive(ChassisSpeeds speeds, double accelX, double accelY) {
+		m_commandedAccelX = accelX;
+		m_commandedAccelY = accelY;
+		m_commandedSpeeds = speeds;
+		// Correct for the robot turning while the module states are held for a loop.
+		// The commanded omega is in drive units like the rest of the speeds, so it
+		// is scaled to a real turn rate first.
+		double rotationRate = DriveConstants.kDiscretizeWithMeasuredTurnRate
+				? Math.toRadians(getTurnRate())
+				: speeds.omegaRadiansPerSecond * getMetersPerSecondPerUnit();
+		ChassisSpeeds discreteSpeeds = ChassisSpeeds.discretize(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond,
+				rotationRate, DriveConstants.kSteerPeriod * DriveConstants.kDiscretizationLookahead);
+		// Only the translation is corrected, the robot should still turn at the
+		// commanded rate
+		discreteSpeeds.omegaRadiansPerSecond = speeds.omegaRadiansPerSecond;
+		setSwerveStates(DriveConstants.kDriveKinematics.toSwerveModuleStates(discreteSpeeds));
+	}
 
-		SwerveDriveKinematics.desaturateWheelSpeeds(moduleStates, DriveConstants.kMaxVelocity);
+	/**
+	 * Drives the robot at the given robot relative speeds in real units, for
+	 * commands that plan their motion in meters and radians. The speeds are
+	 * converted to drive units using {@link #getMetersPerSecondPerUnit()}.
+	 *
+	 * @param speeds
+	 *               The robot relative speeds in meters and radians per second
+	 * @param accelX
+	 *               The commanded acceleration along the robot's forward axis in
+	 *               meters per second squared
+	 * @param accelY
+	 *               The commanded acceleration along the robot's left axis in
+	 *               meters per second squared
+	 */
+	public void driveMetersPerSecond(ChassisSpeeds speeds, double accelX, double accelY) {
+		drive(speeds.div(getMetersPerSecondPerUnit()), accelX, accelY);
+	}
+
+	/**
+	 * Gets the last robot relative speeds passed to {@link #drive(ChassisSpeeds)}
+	 *
+	 * @return The commanded speeds
+	 */
+	public ChassisSpeeds getCommandedSpeeds() {
+		return m_commandedSpeeds;
+	}
+
+	/**
+	 * Gets the commanded acceleration along the robot's forward axis
+	 * 
+	 * @return The acceleration in meters per second squared
+	 */
+	public double getCommandedAccelX() {
+		return m_commandedAccelX;
+	}
+
+	/**
+	 * Gets the commanded acceleration along the robot's left axis
+	 * 
+	 * @return The acceleration in meters per second squared
+	 */
+	public double getCommandedAccelY() {
+		return m_commandedAccelY;
+	}
+
+	public SwerveSensorSnapshot getSensors() {
+		return m_sensors;
+	}
+
+	public DriveHealthMonitor getHealthMonitor() {
+		return m_healthMonitor;
+	}
+
+	public TractionController getTractionController() {
+		return m_tractionController;
+	}
+
+	public void setSwerveStates(SwerveModuleState[] moduleStates) {
+		// A disabled module, or one whose angle isn't known yet, can't help, so it is
+		// left out. The other modules' states still describe the same chassis motion.
+		for (int i = 0; i < m_modules.length; i++) {
+			if (!m_modules[i].isActive()) {
+				moduleStates[i] = new SwerveModuleState(0, moduleStates[i].angle);
+			}
+		}
+		SwerveDriveKinematics.desaturateWheelSpeeds(moduleStates, TunableParameters.get(Parameter.MAX_VELOCITY));
+		// Back off any wheel that is slipping
+		for (int i = 0; i < m_modules.length; i++) {
+			double scale = m_tractionController.getOutputScale(i);
+			if (scale < 1) {
+				moduleStates[i] = new SwerveModuleState(moduleStates[i].speedMetersPerSecond * scale,
+						moduleStates[i].angle);
+			}
+		}
 		// Front left module state
 		SwerveModuleState frontLeft = moduleStates[0];
 
@@ -169,8 +448,8 @@ public class DriveSubsystem extends SubsystemBase {
 	}
 
 	/***
-	 * Recalculates the PID output, and uses it to drive our steer motors. Also logs
-	 * wheel rotations, and PID setpoints
+	 * Recalculates the PID output, and uses it to drive our steer motors. Also
+	 * checks the health of the modules, and updates the robot's pose.
 	 */
 	@Override
 	public void periodic() {
@@ -178,16 +457,32 @@ public class DriveSubsystem extends SubsystemBase {
 		// For each of our steer motors, feed the current angle of the wheel into its
 		// PID controller, and use it to calculate the duty cycle for its motor, and
 		// spin the motor
-
-		m_frontLeftSwerveModule.getSteerMotor().set(m_frontLeftSwerveModule.getPIDController()
-				.calculate(360 * m_frontLeftSwerveModule.getCANCoder().getAbsolutePosition().getValueAsDouble()));
-		m_frontRightSwerveModule.getSteerMotor().set(m_frontRightSwerveModule.getPIDController()
-				.calculate(360 * m_frontRightSwerveModule.getCANCoder().getAbsolutePosition().getValueAsDouble()));
-		m_backLeftSwerveModule.getSteerMotor().set(m_backLeftSwerveModule.getPIDController()
-				.calculate(360 * m_backLeftSwerveModule.getCANCoder().getAbsolutePosition().getValueAsDouble()));
-		m_backRightSwerveModule.getSteerMotor().set(m_backRightSwerveModule.getPIDController()
-				.calculate(360 * m_backRightSwerveModule.getCANCoder().getAbsolutePosition().getValueAsDouble()));
-
+		m_sensors.sample();
+		for (SwerveModule module : m_modules) {
+			module.updateParameters();
+			// Don't steer until the angle is known
+			if (module.isActive()) {
+				module.getSteerMotor().set(module.getPIDController().calculate(module.getAngle()));
+			}
+		}
+		m_healthMonitor.update();
+		m_tractionController.update(Math.toRadians(getTurnRate()), getAccelForward(), getAccelLeft());
+		// Odometry waits for every module's angle to be known. Nothing drives the
+		// robot before then, so it starts from the positions at that point.
+		if (!m_odometryStarted) {
+			m_odometryStarted = true;
+			for (SwerveModule module : m_modules) {
+				m_odometryStarted &= module.isSteerCalibrated();
+			}
+			if (m_odometryStarted) {
+				resetOdometry();
+			}
+		}
+		if (m_odometryStarted) {
+			m_odometry.update(Rotation2d.fromDegrees(getHeading()), getModulePositions());
+		}
+		m_poseEstimator.addOdometry(m_sensors.getTimestamp(), m_odometry.getPoseMeters());
+		m_poseEstimator.update();
 	}
 
 	public SwerveModule getFrontLeftSwerveModule() {
@@ -0,0 +1,115 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.filter.Debouncer;
+import edu.wpi.first.math.filter.Debouncer.DebounceType;
+import edu.wpi.first.wpilibj.Compressor;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants.PneumaticsConstants;
+
+/**
+ * Runs the compressor in closed loop off the analog pressure sensor, but
+ * pauses it whenever the drivetrain needs the battery. The compressor only
+ * refills while the drive motors are lightly loaded, or while the robot is
+ * disabled.
+ */
+public class PneumaticsSubsystem extends SubsystemBase {
+	private final DriveSubsystem m_driveSubsystem;
+	private final Compressor m_compressor = new Compressor(PneumaticsConstants.kModuleType);
+	// Keeps the compressor paused until the load has stayed low for a little while,
+	// so it doesn't chatter on and off between accelerations
+	private final Debouncer m_loadDebouncer = new Debouncer(PneumaticsConstants.kResumeDelay,
+			DebounceType.kFalling);
+	private boolean m_compressorAllowed = false;
+	private double m_allowedTime;
+	private boolean m_lowBattery = false;
+	private int m_loopCount = 0;
+	private double m_pressure;
+	private double m_compressorCurrent;
+
+	/** Creates a new PneumaticsSubsystem. */
+	public PneumaticsSubsystem(DriveSubsystem driveSubsystem) {
+		m_driveSubsystem = driveSubsystem;
+		m_compressor.disable();
+	}
+
+	/**
+	 * Gets the last sampled pressure
+	 *
+	 * @return The pressure in PSI
+	 */
+	public double getPressure() {
+		return m_pressure;
+	}
+
+	/**
+	 * Gets the last sampled compressor current
+	 *
+	 * @return The compressor current in amps
+	 */
+	public double getCompressorCurrent() {
+		return m_compressorCurrent;
+	}
+
+	/**
+	 * Whether the compressor is currently allowed to run. The pressure switch
+	 * logic can still keep it off if the tanks are full.
+	 *
+	 * @return True if the compressor is allowed to run
+	 */
+	public boolean isCompressorAllowed() {
+		return m_compressorAllowed;
+	}
+
+	/***
+	 * Checks the drivetrain load every loop, and turns the compressor on or off
+	 * when the load changes. Pressure and compressor current are only sampled every
+	 * few loops.
+	 */
+	@Override
+	public void periodic() {
+		// The battery voltage includes the compressor's own draw, so it has to come back
+		// up past a higher voltage before it stops counting as low
+		double batteryVoltage = RobotController.getBatteryVoltage();
+		if (batteryVoltage < PneumaticsConstants.kLowBatteryVoltage) {
+			m_lowBattery = true;
+		} else if (batteryVoltage > PneumaticsConstants.kBatteryRecoveredVoltage) {
+			m_lowBattery = false;
+		}
+		boolean heavyLoad = m_driveSubsystem.getDriveCurrent() > PneumaticsConstants.kHeavyDriveCurrent
+				|| m_lowBattery;
+		// Always refill while disabled, nothing else is using the battery
+		boolean allowed = DriverStation.isDisabled() || !m_loadDebouncer.calculate(heavyLoad);
+		// Once the compressor starts, let it run for a while so it doesn't chatter
+		double now = Timer.getFPGATimestamp();
+		if (!allowed && m_compressorAllowed && now - m_allowedTime < PneumaticsConstants.kMinOnTime) {
+			allowed = true;
+		}
+		// Only talk to the PH when the state actually changes
+		if (allowed != m_compressorAllowed) {
+			if (allowed) {
+				m_compressor.enableAnalog(PneumaticsConstants.kMinPressure, PneumaticsConstants.kMaxPressure);
+				m_allowedTime = now;
+			} else {
+				m_compressor.disable();
+			}
+			m_compressorAllowed = allowed;
+		}
+
+		if (++m_loopCount >= PneumaticsConstants.kSampleLoops) {
+			m_loopCount = 0;
+			m_pressure = m_compressor.getPressure();
+			m_compressorCurrent = m_compressor.getCurrent();
+			SmartDashboard.putNumber("Pressure", m_pressure);
+			SmartDashboard.putNumber("Compressor current", m_compressorCurrent);
+			SmartDashboard.putBoolean("Compressor allowed", m_compressorAllowed);
+		}
+	}
+}
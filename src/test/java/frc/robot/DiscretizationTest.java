@@ -0,0 +1,102 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.Constants.DriveConstants;
+
+/**
+ * Checks how far the robot drifts off a straight line when it translates and
+ * spins at the same time, with and without
+ * {@link ChassisSpeeds#discretize(double, double, double, double)} as used by
+ * {@link frc.robot.subsystems.DriveSubsystem#drive(ChassisSpeeds)}.
+ *
+ * <p>
+ * The robot is told to drive straight down the field while spinning. Module
+ * states are held for each loop while the robot turns underneath them, and the
+ * robot's real turn rate can lag behind the command.
+ */
+class DiscretizationTest {
+	private static final double kLoopPeriod = DriveConstants.kSteerPeriod;
+	private static final int kSubsteps = 20;
+	private static final double kDuration = 3; // in seconds
+	private static final double kSpeed = 2; // in meters per second
+	private static final double kYawLag = 0.1; // in seconds
+
+	private static enum Mode {
+		CONTINUOUS, COMMANDED_RATE, MEASURED_RATE
+	}
+
+	@ParameterizedTest
+	@ValueSource(doubles = { 1, 3, 6 })
+	void discretizingRemovesMostOfTheDrift(double omega) {
+		double continuous = run(omega, 0, Mode.CONTINUOUS);
+		double commanded = run(omega, 0, Mode.COMMANDED_RATE);
+		// Without discretizing the robot is off by about 6 cm per rad/s, with it it
+		// stays within 3 mm per rad/s
+		assertTrue(continuous > 0.05 * omega, "continuous " + continuous);
+		assertTrue(commanded < 0.004 * omega, "commanded " + commanded);
+		assertTrue(commanded < continuous / 10, "commanded " + commanded + ", continuous " + continuous);
+	}
+
+	@ParameterizedTest
+	@ValueSource(doubles = { 1, 3, 6 })
+	void measuredRateHelpsWhenYawLags(double omega) {
+		double commanded = run(omega, kYawLag, Mode.COMMANDED_RATE);
+		double measured = run(omega, kYawLag, Mode.MEASURED_RATE);
+		assertTrue(commanded < 0.006 * omega, "commanded " + commanded);
+		assertTrue(measured < commanded, "measured " + measured + ", commanded " + commanded);
+	}
+
+	/**
+	 * Drives the simulated robot and measures the distance from the ideal path
+	 *
+	 * @return The max distance from where the robot should be in meters
+	 */
+	private static double run(double omega, double lag, Mode mode) {
+		double x = 0;
+		double y = 0;
+		double heading = 0;
+		double turnRate = 0;
+		double maxError = 0;
+		double h = kLoopPeriod / kSubsteps;
+		int loops = (int) Math.round(kDuration / kLoopPeriod);
+		for (int loop = 1; loop <= loops; loop++) {
+			ChassisSpeeds speeds = ChassisSpeeds.fromFieldRelativeSpeeds(kSpeed, 0, omega,
+					new Rotation2d(heading));
+			if (mode == Mode.COMMANDED_RATE) {
+				speeds = discretize(speeds, omega);
+			} else if (mode == Mode.MEASURED_RATE) {
+				speeds = discretize(speeds, turnRate);
+			}
+			// Hold the robot relative speeds for the loop while the robot turns
+			for (int i = 0; i < kSubsteps; i++) {
+				double cos = Math.cos(heading);
+				double sin = Math.sin(heading);
+				x += (speeds.vxMetersPerSecond * cos - speeds.vyMetersPerSecond * sin) * h;
+				y += (speeds.vxMetersPerSecond * sin + speeds.vyMetersPerSecond * cos) * h;
+				turnRate = lag > 0 ? turnRate + (omega - turnRate) * h / lag : omega;
+				heading += turnRate * h;
+			}
+			double error = Math.hypot(x - kSpeed * loop * kLoopPeriod, y);
+			maxError = Math.max(maxError, error);
+		}
+		return maxError;
+	}
+
+	/** Discretizes the same way the drive subsystem does, keeping the omega. */
+	private static ChassisSpeeds discretize(ChassisSpeeds speeds, double rotationRate) {
+		ChassisSpeeds discreteSpeeds = ChassisSpeeds.discretize(speeds.vxMetersPerSecond,
+				speeds.vyMetersPerSecond, rotationRate, kLoopPeriod * DriveConstants.kDiscretizationLookahead);
+		discreteSpeeds.omegaRadiansPerSecond = speeds.omegaRadiansPerSecond;
+		return discreteSpeeds;
+	}
+}
@@ -0,0 +1,43 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.Constants.HealthConstants;
+import frc.robot.DriveHealthMonitor.Fault;
+
+class DriveHealthMonitorTest {
+	@Test
+	void recoveryWaitDoublesUpToLimit() {
+		assertEquals(HealthConstants.kRecoveryLoops, DriveHealthMonitor.getRecoveryLoops(1));
+		assertEquals(2 * HealthConstants.kRecoveryLoops, DriveHealthMonitor.getRecoveryLoops(2));
+		assertEquals(4 * HealthConstants.kRecoveryLoops, DriveHealthMonitor.getRecoveryLoops(3));
+		int longest = HealthConstants.kRecoveryLoops << HealthConstants.kMaxRecoveryDoublings;
+		assertEquals(longest, DriveHealthMonitor.getRecoveryLoops(HealthConstants.kMaxRecoveryDoublings + 1));
+		assertEquals(longest, DriveHealthMonitor.getRecoveryLoops(HealthConstants.kMaxRecoveryDoublings + 10));
+	}
+
+	@Test
+	void signalFaultsRecoverUntilLimit() {
+		for (Fault fault : new Fault[] { Fault.STALE_CANCODER, Fault.CANCODER_ERROR, Fault.ANGLE_MISMATCH,
+				Fault.SPEED_MISMATCH }) {
+			for (int failCount = 1; failCount <= HealthConstants.kMaxRecoveries; failCount++) {
+				assertTrue(DriveHealthMonitor.canRecover(fault, failCount), fault + " after " + failCount);
+			}
+			assertFalse(DriveHealthMonitor.canRecover(fault, HealthConstants.kMaxRecoveries + 1), fault.toString());
+		}
+	}
+
+	@Test
+	void controllerFaultsNeverRecover() {
+		assertFalse(DriveHealthMonitor.canRecover(Fault.DRIVE_CONTROLLER, 1));
+		assertFalse(DriveHealthMonitor.canRecover(Fault.STEER_CONTROLLER, 1));
+	}
+}
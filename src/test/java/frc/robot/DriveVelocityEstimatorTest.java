@@ -0,0 +1,77 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.Constants.DriveConstants;
+import frc.robot.Constants.VelocityConstants;
+
+class DriveVelocityEstimatorTest {
+	private static final double kDt = DriveConstants.kSteerPeriod;
+
+	@Test
+	void tracksConstantVelocity() {
+		DriveVelocityEstimator estimator = new DriveVelocityEstimator();
+		for (int loop = 0; loop <= 50; loop++) {
+			estimator.update(0.5 + 1.5 * loop * kDt, loop * kDt);
+		}
+		assertEquals(1.5, estimator.getVelocity(), 1e-3);
+		assertEquals(0.5 + 1.5 * 50 * kDt, estimator.getPosition(), 1e-3);
+	}
+
+	@Test
+	void kalmanFilterLagsConstantAcceleration() {
+		DriveVelocityEstimator estimator = new DriveVelocityEstimator();
+		double accel = 3; // in meters per second squared
+		for (int loop = 0; loop <= 100; loop++) {
+			double time = loop * kDt;
+			estimator.update(accel * time * time / 2, time);
+			if (loop >= 25) {
+				// The constant velocity model trails a steady ramp by a fixed amount, which
+				// should be within the latency the rest of the code assumes
+				double error = accel * time - estimator.getVelocity();
+				assertEquals(0, error, accel * VelocityConstants.kRioEstimateLatency, "loop " + loop);
+			}
+		}
+	}
+
+	@Test
+	void differenceIsHalfALoopBehind() {
+		DriveVelocityEstimator estimator = new DriveVelocityEstimator(false, 0, 0);
+		double accel = 3; // in meters per second squared
+		for (int loop = 0; loop <= 10; loop++) {
+			double time = loop * kDt;
+			estimator.update(accel * time * time / 2, time);
+		}
+		// The difference is the velocity at the middle of the last loop
+		assertEquals(accel * (10 - 0.5) * kDt, estimator.getVelocity(), 1e-9);
+	}
+
+	@Test
+	void ignoresRepeatedTimestamps() {
+		DriveVelocityEstimator estimator = new DriveVelocityEstimator(false, 0, 0);
+		estimator.update(0, 0);
+		estimator.update(1, 1);
+		estimator.update(5, 1);
+		estimator.update(4, 0.5);
+		assertEquals(1, estimator.getVelocity(), 1e-9);
+	}
+
+	@Test
+	void resetStartsOver() {
+		DriveVelocityEstimator estimator = new DriveVelocityEstimator();
+		for (int loop = 0; loop <= 50; loop++) {
+			estimator.update(2 * loop * kDt, loop * kDt);
+		}
+		estimator.reset();
+		// The first position after a reset only sets where the estimate starts
+		estimator.update(-10, 1.1);
+		assertEquals(0, estimator.getVelocity());
+		assertEquals(-10, estimator.getPosition());
+	}
+}
@@ -0,0 +1,50 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.DriveHealthMonitor.Fault;
+
+class FaultHistoryTest {
+	@Test
+	void startsEmpty() {
+		FaultHistory history = new FaultHistory(4);
+		assertEquals(0, history.size());
+		assertThrows(IndexOutOfBoundsException.class, () -> history.getFault(0));
+	}
+
+	@Test
+	void newestFaultComesFirst() {
+		FaultHistory history = new FaultHistory(4);
+		history.add(1, 0, Fault.STALE_CANCODER);
+		history.add(2, 3, Fault.SPEED_MISMATCH);
+		assertEquals(2, history.size());
+		assertEquals(Fault.SPEED_MISMATCH, history.getFault(0));
+		assertEquals(3, history.getModule(0));
+		assertEquals(2, history.getTime(0));
+		assertEquals(Fault.STALE_CANCODER, history.getFault(1));
+		assertEquals(0, history.getModule(1));
+		assertEquals(1, history.getTime(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> history.getFault(2));
+	}
+
+	@Test
+	void overwritesOldestWhenFull() {
+		FaultHistory history = new FaultHistory(3);
+		for (int i = 0; i < 5; i++) {
+			history.add(i, i, Fault.ANGLE_MISMATCH);
+		}
+		assertEquals(3, history.size());
+		// Faults 0 and 1 have been pushed out
+		assertEquals(4, history.getModule(0));
+		assertEquals(3, history.getModule(1));
+		assertEquals(2, history.getModule(2));
+		assertThrows(IndexOutOfBoundsException.class, () -> history.getModule(3));
+	}
+}
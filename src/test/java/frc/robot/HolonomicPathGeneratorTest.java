@@ -0,0 +1,258 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+class HolonomicPathGeneratorTest {
+	private static final double kEpsilon = 1e-9;
+	private static final double kMaxSpeed = 1.5;
+	private static final double kMaxAccel = 3;
+	private static final double kMaxOmega = 3;
+	private static final double kMaxAlpha = 8;
+	private static final double kAcrossShare = 0.4;
+	// Step used to check the samples against each other
+	private static final double kStep = 1e-4;
+
+	private final HolonomicPathGenerator m_path = new HolonomicPathGenerator();
+
+	private void generate(Pose2d start, double vx, double vy, double omega, Pose2d target) {
+		m_path.generate(start, vx, vy, omega, target, kMaxSpeed, kMaxAccel, kMaxOmega, kMaxAlpha, kAcrossShare);
+	}
+
+	private void assertEndsAt(Pose2d target) {
+		m_path.sample(m_path.getTotalTime() + 1);
+		assertEquals(target.getX(), m_path.getX(), kEpsilon);
+		assertEquals(target.getY(), m_path.getY(), kEpsilon);
+		assertEquals(0, MathUtil.angleModulus(target.getRotation().getRadians() - m_path.getHeading()), kEpsilon);
+		assertEquals(0, m_path.getVx(), kEpsilon);
+		assertEquals(0, m_path.getVy(), kEpsilon);
+		assertEquals(0, m_path.getOmega(), kEpsilon);
+		assertEquals(0, m_path.getAx(), kEpsilon);
+		assertEquals(0, m_path.getAy(), kEpsilon);
+	}
+
+	/**
+	 * Steps through the whole path checking the limits, and that the position and
+	 * velocity are what the velocity and acceleration integrate to
+	 *
+	 * @param maxSpeed
+	 *                 The fastest the path may go, more than the limit if it
+	 *                 starts faster
+	 */
+	private void assertConsistent(double maxSpeed) {
+		m_path.sample(0);
+		double x = m_path.getX();
+		double y = m_path.getY();
+		double heading = m_path.getHeading();
+		double vx = m_path.getVx();
+		double vy = m_path.getVy();
+		double omega = m_path.getOmega();
+		for (double t = kStep; t < m_path.getTotalTime() + 0.1; t += kStep) {
+			m_path.sample(t);
+			double speed = Math.hypot(m_path.getVx(), m_path.getVy());
+			assertTrue(speed <= maxSpeed + kEpsilon, "speed " + speed + " at " + t);
+			double accel = Math.hypot(m_path.getAx(), m_path.getAy());
+			assertTrue(accel <= kMaxAccel + kEpsilon, "acceleration " + accel + " at " + t);
+			assertTrue(Math.abs(m_path.getOmega()) <= kMaxOmega + kEpsilon, "turn rate at " + t);
+
+			// Trapezoidal integration is exact for a constant acceleration, so only the
+			// steps where the acceleration changes leave a small error
+			assertEquals(x + (vx + m_path.getVx()) / 2 * kStep, m_path.getX(), 1e-6, "x at " + t);
+			assertEquals(y + (vy + m_path.getVy()) / 2 * kStep, m_path.getY(), 1e-6, "y at " + t);
+			assertEquals(heading + (omega + m_path.getOmega()) / 2 * kStep, m_path.getHeading(), 1e-6,
+					"heading at " + t);
+			assertEquals(vx + m_path.getAx() * kStep, m_path.getVx(), kMaxAccel * kStep + kEpsilon, "vx at " + t);
+			assertEquals(vy + m_path.getAy() * kStep, m_path.getVy(), kMaxAccel * kStep + kEpsilon, "vy at " + t);
+			x = m_path.getX();
+			y = m_path.getY();
+			heading = m_path.getHeading();
+			vx = m_path.getVx();
+			vy = m_path.getVy();
+			omega = m_path.getOmega();
+		}
+	}
+
+	@Test
+	void longMoveIsTrapezoid() {
+		Pose2d target = new Pose2d(4, 0, new Rotation2d());
+		generate(new Pose2d(), 0, 0, 0, target);
+		// 0.5 s to speed up over 0.375 m, the same to stop, and cruise the rest
+		assertEquals(0.5 + 3.25 / 1.5 + 0.5, m_path.getTotalTime(), kEpsilon);
+
+		m_path.sample(0.25);
+		assertEquals(0.75, m_path.getVx(), kEpsilon);
+		assertEquals(kMaxAccel, m_path.getAx(), kEpsilon);
+		m_path.sample(1.5);
+		assertEquals(kMaxSpeed, m_path.getVx(), kEpsilon);
+		assertEquals(0, m_path.getAx(), kEpsilon);
+		assertEquals(0.375 + 1.5, m_path.getX(), kEpsilon);
+		m_path.sample(m_path.getTotalTime() - 0.25);
+		assertEquals(0.75, m_path.getVx(), kEpsilon);
+		assertEquals(-kMaxAccel, m_path.getAx(), kEpsilon);
+
+		assertEndsAt(target);
+		assertConsistent(kMaxSpeed);
+	}
+
+	@Test
+	void shortMoveIsTriangle() {
+		Pose2d target = new Pose2d(0.5, 0, new Rotation2d());
+		generate(new Pose2d(), 0, 0, 0, target);
+		// Never reaches the max speed, so it turns round halfway
+		double peak = Math.sqrt(kMaxAccel * 0.5);
+		assertTrue(peak < kMaxSpeed);
+		assertEquals(2 * peak / kMaxAccel, m_path.getTotalTime(), kEpsilon);
+
+		m_path.sample(peak / kMaxAccel);
+		assertEquals(peak, m_path.getVx(), kEpsilon);
+		assertEquals(0.25, m_path.getX(), kEpsilon);
+
+		assertEndsAt(target);
+		assertConsistent(kMaxSpeed);
+	}
+
+	@Test
+	void startsAtTheGivenVelocity() {
+		Pose2d target = new Pose2d(4, 0, new Rotation2d());
+		generate(new Pose2d(), 1, 0, 0, target);
+		m_path.sample(0);
+		assertEquals(1, m_path.getVx(), kEpsilon);
+		assertEquals(kMaxAccel, m_path.getAx(), kEpsilon);
+		// Only 0.5 m/s left to speed up, which covers 0.208 m
+		double speedUp = 0.5 / kMaxAccel;
+		double speedUpDistance = (kMaxSpeed * kMaxSpeed - 1) / (2 * kMaxAccel);
+		assertEquals(speedUp + (4 - speedUpDistance - 0.375) / kMaxSpeed + 0.5, m_path.getTotalTime(), kEpsilon);
+
+		assertEndsAt(target);
+		assertConsistent(kMaxSpeed);
+	}
+
+	@Test
+	void slowsDownWhenStartingTooFast() {
+		Pose2d target = new Pose2d(4, 0, new Rotation2d());
+		generate(new Pose2d(), 2, 0, 0, target);
+		m_path.sample(0);
+		assertEquals(2, m_path.getVx(), kEpsilon);
+		assertEquals(-kMaxAccel, m_path.getAx(), kEpsilon);
+		m_path.sample(1);
+		assertEquals(kMaxSpeed, m_path.getVx(), kEpsilon);
+
+		assertEndsAt(target);
+		assertConsistent(2);
+	}
+
+	@Test
+	void overshootsWhenItCantStopInTime() {
+		Pose2d target = new Pose2d(0.2, 0, new Rotation2d());
+		generate(new Pose2d(), kMaxSpeed, 0, 0, target);
+		// Stopping takes 0.375 m, so it goes past and comes back
+		double furthest = 0;
+		for (double t = 0; t < m_path.getTotalTime(); t += kStep) {
+			m_path.sample(t);
+			furthest = Math.max(furthest, m_path.getX());
+		}
+		assertEquals(0.375, furthest, 1e-6);
+
+		assertEndsAt(target);
+		assertConsistent(kMaxSpeed);
+	}
+
+	@Test
+	void reversedDirection() {
+		Pose2d start = new Pose2d(1, 1, new Rotation2d());
+		Pose2d target = new Pose2d(-2, -3, new Rotation2d());
+		generate(start, 0, 0, 0, target);
+		// Same 5 m as a move forwards
+		double cruise = (5 - 0.75) / kMaxSpeed;
+		assertEquals(1 + cruise, m_path.getTotalTime(), kEpsilon);
+
+		m_path.sample(0.5 + cruise / 2);
+		assertEquals(-0.6 * kMaxSpeed, m_path.getVx(), kEpsilon);
+		assertEquals(-0.8 * kMaxSpeed, m_path.getVy(), kEpsilon);
+		m_path.sample(0.25);
+		assertEquals(-0.6 * kMaxAccel, m_path.getAx(), kEpsilon);
+		assertEquals(-0.8 * kMaxAccel, m_path.getAy(), kEpsilon);
+
+		assertEndsAt(target);
+		assertConsistent(kMaxSpeed);
+	}
+
+	@Test
+	void stopsVelocityAcrossTheLine() {
+		Pose2d target = new Pose2d(4, 0, new Rotation2d());
+		generate(new Pose2d(), 0, 1, 0, target);
+		m_path.sample(0);
+		assertEquals(0, m_path.getVx(), kEpsilon);
+		assertEquals(1, m_path.getVy(), kEpsilon);
+		// The across profile only gets its share of the acceleration
+		assertEquals(-kAcrossShare * kMaxAccel, m_path.getAy(), kEpsilon);
+
+		assertEndsAt(target);
+		assertConsistent(kMaxSpeed);
+	}
+
+	@Test
+	void turnsTheShortWay() {
+		Pose2d target = new Pose2d(0, 0, Rotation2d.fromDegrees(-170));
+		generate(new Pose2d(0, 0, Rotation2d.fromDegrees(170)), 0, 0, 0, target);
+		// 20 degrees CCW rather than 340 CW
+		double angle = Math.toRadians(20);
+		double peak = Math.sqrt(kMaxAlpha * angle);
+		assertEquals(2 * peak / kMaxAlpha, m_path.getTotalTime(), kEpsilon);
+		m_path.sample(m_path.getTotalTime() / 2);
+		assertEquals(peak, m_path.getOmega(), kEpsilon);
+
+		assertEndsAt(target);
+		assertConsistent(kMaxSpeed);
+	}
+
+	@Test
+	void replanningContinuesFromTheSample() {
+		generate(new Pose2d(), 0, 0, 0, new Pose2d(4, 0, new Rotation2d()));
+		m_path.sample(1);
+		double x = m_path.getX();
+		double y = m_path.getY();
+		double heading = m_path.getHeading();
+		double vx = m_path.getVx();
+		double vy = m_path.getVy();
+
+		// The target moves to the side, so replan from the sampled state
+		Pose2d target = new Pose2d(3, 1, Rotation2d.fromDegrees(45));
+		generate(new Pose2d(x, y, new Rotation2d(heading)), vx, vy, m_path.getOmega(), target);
+		m_path.sample(0);
+		assertEquals(x, m_path.getX(), kEpsilon);
+		assertEquals(y, m_path.getY(), kEpsilon);
+		assertEquals(heading, m_path.getHeading(), kEpsilon);
+		assertEquals(vx, m_path.getVx(), kEpsilon);
+		assertEquals(vy, m_path.getVy(), kEpsilon);
+		assertEquals(0, m_path.getOmega(), kEpsilon);
+
+		// The velocity across the new line only slows at its share of the
+		// acceleration while the velocity along it speeds up, so the speed can
+		// briefly go over the limit, but neither part does
+		double dx = target.getX() - x;
+		double dy = target.getY() - y;
+		double across = Math.abs(vy * dx - vx * dy) / Math.hypot(dx, dy);
+		assertTrue(across > kAcrossShare * kMaxSpeed);
+		assertEndsAt(target);
+		assertConsistent(Math.hypot(Math.sqrt(1 - kAcrossShare * kAcrossShare) * kMaxSpeed, across));
+	}
+
+	@Test
+	void alreadyThere() {
+		Pose2d target = new Pose2d(1, 2, Rotation2d.fromDegrees(30));
+		generate(target, 0, 0, 0, target);
+		assertEquals(0, m_path.getTotalTime(), kEpsilon);
+		assertEndsAt(target);
+	}
+}
@@ -0,0 +1,99 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+class PoseHistoryTest {
+	private static final double kEpsilon = 1e-9;
+
+	@Test
+	void emptyHistory() {
+		PoseHistory history = new PoseHistory(4);
+		assertNull(history.sample(0));
+		assertEquals(Double.NaN, history.getOldestTime());
+		assertEquals(0, history.size());
+	}
+
+	@Test
+	void interpolatesBetweenEntries() {
+		PoseHistory history = new PoseHistory(8);
+		history.add(1, new Pose2d(0, 0, Rotation2d.fromDegrees(0)));
+		history.add(2, new Pose2d(2, -4, Rotation2d.fromDegrees(90)));
+		history.add(3, new Pose2d(3, -4, Rotation2d.fromDegrees(90)));
+
+		Pose2d pose = history.sample(1.25);
+		assertEquals(0.5, pose.getX(), kEpsilon);
+		assertEquals(-1, pose.getY(), kEpsilon);
+		assertEquals(22.5, pose.getRotation().getDegrees(), kEpsilon);
+
+		pose = history.sample(2.5);
+		assertEquals(2.5, pose.getX(), kEpsilon);
+		assertEquals(-4, pose.getY(), kEpsilon);
+	}
+
+	@Test
+	void interpolatesAcrossAngleWrap() {
+		PoseHistory history = new PoseHistory(4);
+		history.add(0, new Pose2d(0, 0, Rotation2d.fromDegrees(170)));
+		history.add(1, new Pose2d(0, 0, Rotation2d.fromDegrees(-170)));
+		// The short way round is through 180, not through 0
+		assertEquals(180, Math.abs(history.sample(0.5).getRotation().getDegrees()), kEpsilon);
+		assertEquals(175, history.sample(0.25).getRotation().getDegrees(), kEpsilon);
+	}
+
+	@Test
+	void clampsOutsideRange() {
+		PoseHistory history = new PoseHistory(4);
+		history.add(1, new Pose2d(1, 0, new Rotation2d()));
+		history.add(2, new Pose2d(2, 0, new Rotation2d()));
+		assertEquals(1, history.sample(0).getX(), kEpsilon);
+		assertEquals(2, history.sample(5).getX(), kEpsilon);
+	}
+
+	@Test
+	void ignoresOutOfOrderPoses() {
+		PoseHistory history = new PoseHistory(4);
+		history.add(1, new Pose2d(1, 0, new Rotation2d()));
+		history.add(2, new Pose2d(2, 0, new Rotation2d()));
+		history.add(2, new Pose2d(10, 0, new Rotation2d()));
+		history.add(1.5, new Pose2d(10, 0, new Rotation2d()));
+		assertEquals(2, history.size());
+		assertEquals(1.5, history.sample(1.5).getX(), kEpsilon);
+	}
+
+	@Test
+	void evictsOldestWhenFull() {
+		PoseHistory history = new PoseHistory(3);
+		for (int i = 0; i < 5; i++) {
+			history.add(i, new Pose2d(i, 0, new Rotation2d()));
+		}
+		assertEquals(3, history.size());
+		assertEquals(2, history.getOldestTime());
+		// Times before the oldest kept entry get the oldest pose
+		assertEquals(2, history.sample(0.5).getX(), kEpsilon);
+		// Interpolation still works across the wrap in the buffer
+		assertEquals(3.5, history.sample(3.5).getX(), kEpsilon);
+		assertEquals(4, history.sample(4).getX(), kEpsilon);
+	}
+
+	@Test
+	void clear() {
+		PoseHistory history = new PoseHistory(3);
+		history.add(1, new Pose2d(1, 0, new Rotation2d()));
+		history.clear();
+		assertEquals(0, history.size());
+		assertNull(history.sample(1));
+		// Times don't have to be after the cleared entries
+		history.add(0.5, new Pose2d(5, 0, new Rotation2d()));
+		assertEquals(5, history.sample(0.5).getX(), kEpsilon);
+	}
+}
@@ -0,0 +1,137 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.Constants.SteerSensorConstants;
+import frc.robot.Constants.SwerveConstants;
+
+class SteerOffsetEstimatorTest {
+	private static final double kEpsilon = 1e-9;
+	private static final double kGain = SteerSensorConstants.kDriftCorrectionGain;
+
+	/** Creates an estimator calibrated to an offset of 90 degrees, held at 10 */
+	private static SteerOffsetEstimator calibrated() {
+		SteerOffsetEstimator estimator = new SteerOffsetEstimator();
+		estimator.updateMotor(10);
+		estimator.updateMotor(10);
+		estimator.addAbsolute(100, 10);
+		return estimator;
+	}
+
+	/** Adds a CANcoder reading with the motor held still at 10 degrees */
+	private static boolean read(SteerOffsetEstimator estimator, double absoluteAngle) {
+		estimator.updateMotor(10);
+		return estimator.addAbsolute(absoluteAngle, 10);
+	}
+
+	@Test
+	void calibratesOnceStill() {
+		SteerOffsetEstimator estimator = new SteerOffsetEstimator();
+		// Nothing to compare the first position with, so it might be moving
+		estimator.updateMotor(10);
+		assertFalse(estimator.isStill());
+		estimator.addAbsolute(100, 10);
+		assertFalse(estimator.isCalibrated());
+
+		estimator.updateMotor(10);
+		estimator.addAbsolute(100, 10);
+		assertTrue(estimator.isCalibrated());
+		assertEquals(90, estimator.getOffset(), kEpsilon);
+		assertEquals(100, estimator.getAngle(10), kEpsilon);
+		assertEquals(10, estimator.getAngle(280), kEpsilon);
+	}
+
+	@Test
+	void ignoresReadingsWhileTurning() {
+		SteerOffsetEstimator estimator = calibrated();
+		estimator.updateMotor(10 + 2 * SteerSensorConstants.kMaxCorrectionMotion);
+		assertFalse(estimator.isStill());
+		estimator.addAbsolute(120, 10);
+		assertEquals(90, estimator.getOffset(), kEpsilon);
+
+		// A hall count of jitter while the PID holds the module still is fine
+		double count = 360 / (42 * SwerveConstants.kSteerGearRatio);
+		estimator.updateMotor(10 + 2 * SteerSensorConstants.kMaxCorrectionMotion + count);
+		assertTrue(estimator.isStill());
+	}
+
+	@Test
+	void blendsSmallErrors() {
+		SteerOffsetEstimator estimator = calibrated();
+		read(estimator, 105);
+		assertEquals(90 + 5 * kGain, estimator.getOffset(), kEpsilon);
+		for (int i = 0; i < 100; i++) {
+			read(estimator, 105);
+		}
+		assertEquals(95, estimator.getOffset(), 1e-6);
+	}
+
+	@Test
+	void blendsAcrossTheWrap() {
+		SteerOffsetEstimator estimator = new SteerOffsetEstimator();
+		estimator.updateMotor(0);
+		estimator.updateMotor(0);
+		estimator.addAbsolute(1, 0);
+		estimator.updateMotor(0);
+		// 359 is 2 degrees the other way, not 358
+		estimator.addAbsolute(359, 0);
+		assertEquals(1 - 2 * kGain, estimator.getOffset(), kEpsilon);
+		assertEquals(0, estimator.getDriftResets());
+	}
+
+	@Test
+	void resetsLargeErrors() {
+		SteerOffsetEstimator estimator = calibrated();
+		double jump = SteerSensorConstants.kMaxDrift + 5;
+		assertFalse(read(estimator, 100 + jump));
+		assertEquals(90 + jump, estimator.getOffset(), kEpsilon);
+		assertEquals(1, estimator.getDriftResets());
+		assertFalse(estimator.isAbsoluteOnly());
+	}
+
+	@Test
+	void fallsBackAfterResetsInARow() {
+		SteerOffsetEstimator estimator = calibrated();
+		double angle = 100;
+		for (int i = 0; i < SteerSensorConstants.kMaxDriftResets; i++) {
+			angle += SteerSensorConstants.kMaxDrift + 5;
+			assertFalse(read(estimator, angle));
+			// Fewer good readings than it takes to clear the count
+			for (int j = 0; j < SteerSensorConstants.kDriftResetClearReadings - 1; j++) {
+				read(estimator, angle);
+			}
+		}
+		assertFalse(estimator.isAbsoluteOnly());
+
+		angle += SteerSensorConstants.kMaxDrift + 5;
+		assertTrue(read(estimator, angle));
+		assertTrue(estimator.isAbsoluteOnly());
+		// Only reported once, and the offset isn't touched again
+		double offset = estimator.getOffset();
+		assertFalse(read(estimator, angle + 50));
+		assertEquals(offset, estimator.getOffset(), kEpsilon);
+	}
+
+	@Test
+	void occasionalResetsDontAddUp() {
+		SteerOffsetEstimator estimator = calibrated();
+		double angle = 100;
+		for (int i = 0; i < 10 * SteerSensorConstants.kMaxDriftResets; i++) {
+			angle += SteerSensorConstants.kMaxDrift + 5;
+			assertFalse(read(estimator, angle));
+			for (int j = 0; j < SteerSensorConstants.kDriftResetClearReadings; j++) {
+				read(estimator, angle);
+			}
+			assertEquals(0, estimator.getDriftResets());
+		}
+		assertFalse(estimator.isAbsoluteOnly());
+	}
+}
@@ -0,0 +1,126 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.Constants.TractionConstants;
+
+class TractionControllerTest {
+	private static final double kDt = 0.02;
+	private static final Translation2d[] kLocations = { DriveConstants.kFrontLeftLocation,
+			DriveConstants.kFrontRightLocation, DriveConstants.kBackLeftLocation, DriveConstants.kBackRightLocation };
+
+	private TractionController m_controller;
+	private final double[] m_speeds = new double[4];
+	private final double[] m_angles = new double[4];
+	private final boolean[] m_active = { true, true, true, true };
+	private double m_time;
+
+	@BeforeEach
+	void setup() {
+		// The modules are only read by the public update, so they can be left out
+		m_controller = new TractionController(new SwerveModule[4], kLocations);
+		m_time = 0;
+	}
+
+	private void update(double yawRate, double accelForward, double accelLeft) {
+		m_controller.update(m_speeds, m_angles, m_active, yawRate, accelForward, accelLeft, m_time);
+		m_time += kDt;
+	}
+
+	@Test
+	void oneWheelSpinning() {
+		Arrays.fill(m_speeds, 1);
+		update(0, 0, 0);
+		m_speeds[2] = 2.5;
+		update(0, 0, 0);
+		for (int i = 0; i < 4; i++) {
+			assertEquals(i == 2, m_controller.isSlipping(i), "module " + i);
+		}
+		assertEquals(TractionConstants.kSlipCutback, m_controller.getOutputScale(2), 1e-9);
+		assertEquals(1, m_controller.getOutputScale(0));
+		// The estimate only uses the wheels that grip
+		assertEquals(1, m_controller.getEstimatedVx(), 1e-9);
+
+		// Once it grips again the output ramps back up
+		m_speeds[2] = 1;
+		for (int loop = 0; loop < 20; loop++) {
+			update(0, 0, 0);
+		}
+		assertFalse(m_controller.isSlipping(2));
+		assertEquals(1, m_controller.getOutputScale(2));
+	}
+
+	@Test
+	void allWheelsAcceleratingWithRobot() {
+		double accel = 0.5; // in Gs
+		double speed = 0;
+		for (int loop = 0; loop < 100; loop++) {
+			Arrays.fill(m_speeds, speed);
+			update(0, accel, 0);
+			for (int i = 0; i < 4; i++) {
+				assertFalse(m_controller.isSlipping(i), "loop " + loop + " module " + i);
+			}
+			speed += accel * 9.81 * kDt;
+		}
+		assertEquals(speed - accel * 9.81 * kDt, m_controller.getEstimatedVx(), 1e-9);
+	}
+
+	@Test
+	void allWheelsSpinningWhileRobotDoesNot() {
+		Arrays.fill(m_speeds, 1);
+		update(0, 0, 0);
+		// Every wheel speeds up but the navX says the robot didn't, so comparing
+		// the wheels with each other can't catch it
+		Arrays.fill(m_speeds, 2);
+		update(0, 0, 0);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(m_controller.isSlipping(i), "module " + i);
+		}
+	}
+
+	@Test
+	void turningInPlace() {
+		double yawRate = 4; // in radians per second
+		for (int i = 0; i < 4; i++) {
+			// v = w x r
+			double vx = -yawRate * kLocations[i].getY();
+			double vy = yawRate * kLocations[i].getX();
+			m_speeds[i] = Math.hypot(vx, vy);
+			m_angles[i] = Math.atan2(vy, vx);
+		}
+		for (int loop = 0; loop < 10; loop++) {
+			update(yawRate, 0, 0);
+		}
+		for (int i = 0; i < 4; i++) {
+			assertFalse(m_controller.isSlipping(i), "module " + i);
+			assertEquals(1, m_controller.getOutputScale(i));
+		}
+		assertEquals(0, m_controller.getEstimatedVx(), 1e-9);
+		assertEquals(0, m_controller.getEstimatedVy(), 1e-9);
+	}
+
+	@Test
+	void inactiveModuleIgnored() {
+		Arrays.fill(m_speeds, 1);
+		m_active[3] = false;
+		m_speeds[3] = 10;
+		update(0, 0, 0);
+		update(0, 0, 0);
+		for (int i = 0; i < 4; i++) {
+			assertFalse(m_controller.isSlipping(i), "module " + i);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.networktables.DoubleEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.TunableParameters.Parameter;
+
+class TunableParametersTest {
+	private static final double kTimeout = 1; // in seconds
+
+	private final DoubleEntry m_maxVelocity = NetworkTableInstance.getDefault()
+			.getDoubleTopic("/Tuning/Drive/kMaxVelocity").getEntry(0);
+
+	@BeforeAll
+	static void initializeHal() {
+		assertTrue(HAL.initialize(500, 0));
+	}
+
+	@AfterEach
+	void restoreDefault() throws InterruptedException {
+		m_maxVelocity.set(DriveConstants.kMaxVelocity);
+		waitFor(Parameter.MAX_VELOCITY, DriveConstants.kMaxVelocity);
+	}
+
+	/** Waits for the listener to pass a value through to the snapshot */
+	private static void waitFor(Parameter parameter, double value) throws InterruptedException {
+		long deadline = System.nanoTime() + (long) (kTimeout * 1e9);
+		while (TunableParameters.get(parameter) != value && System.nanoTime() < deadline) {
+			NetworkTableInstance.getDefault().waitForListenerQueue(kTimeout);
+			Thread.sleep(1);
+		}
+		assertEquals(value, TunableParameters.get(parameter), parameter.toString());
+	}
+
+	@Test
+	void startsWithDefaults() {
+		TunableParameters.Snapshot snapshot = TunableParameters.get();
+		assertEquals(DriveConstants.kP, snapshot.get(Parameter.DRIVE_P));
+		assertEquals(DriveConstants.kDriveScale, snapshot.get(Parameter.DRIVE_SCALE));
+		assertEquals(DriveConstants.kHeadingD, snapshot.get(Parameter.HEADING_D));
+		assertEquals(DriveConstants.kDriveScale, TunableParameters.get(Parameter.DRIVE_SCALE));
+	}
+
+	@Test
+	void changeSwapsInNewSnapshot() throws InterruptedException {
+		TunableParameters.Snapshot before = TunableParameters.get();
+		m_maxVelocity.set(1.25);
+		waitFor(Parameter.MAX_VELOCITY, 1.25);
+		TunableParameters.Snapshot after = TunableParameters.get();
+		assertNotSame(before, after);
+		assertEquals(1.25, after.get(Parameter.MAX_VELOCITY));
+		// Snapshots already handed out don't change
+		assertEquals(DriveConstants.kMaxVelocity, before.get(Parameter.MAX_VELOCITY));
+		// The other parameters are carried over
+		assertEquals(before.get(Parameter.DRIVE_SCALE), after.get(Parameter.DRIVE_SCALE));
+	}
+
+	@Test
+	void unchangedValueKeepsSnapshot() throws InterruptedException {
+		TunableParameters.Snapshot before = TunableParameters.get();
+		m_maxVelocity.set(DriveConstants.kMaxVelocity);
+		NetworkTableInstance.getDefault().waitForListenerQueue(kTimeout);
+		assertSame(before, TunableParameters.get());
+	}
+}
@@ -0,0 +1,224 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import frc.robot.Constants.DriveConstants;
+import frc.robot.Constants.SwerveConstants;
+import frc.robot.Constants.VelocityConstants;
+
+/**
+ * Compares how far behind the wheel each drive velocity source is.
+ *
+ * <p>
+ * A drive wheel follows a 1 Hz sine wave. The hall sensor is quantized to 42
+ * counts per motor revolution, and the SPARK MAX velocity is modeled as a
+ * difference over its measurement period averaged over its depth. Status
+ * frames go out at a random phase to the robot loop, and each one arrives
+ * after a random CAN delay. The loop itself runs a little late by a random
+ * amount, reads the newest frame that has arrived, and stamps it with the RIO
+ * time, like {@link SwerveSensorSnapshot} does. The lag is found by shifting
+ * each estimate until it best matches the real velocity, and is averaged over
+ * several runs.
+ */
+class VelocitySourceLatencyTest {
+	private static final int kStepsPerMs = 10;
+	private static final int kDurationMs = 6000;
+	private static final int kSteps = kDurationMs * kStepsPerMs;
+	private static final int kLoopMs = (int) Math.round(DriveConstants.kSteerPeriod * 1000);
+	private static final double kAmplitude = 2; // in meters per second
+	private static final double kFrequency = 1; // in Hz
+	private static final double kMetersPerCount = 1.0 / 42 / SwerveConstants.kMotorRevsPerMeter;
+	private static final double kMaxCanDelayMs = 2;
+	private static final double kMaxLoopDelayMs = 1;
+	private static final int kMaxLagMs = 250;
+	private static final int kRuns = 20;
+	// How far the measured lags can be from the ones in VelocityConstants
+	private static final double kLagToleranceMs = 5;
+
+	private static final int kSparkDefault = 0;
+	private static final int kSparkConfigured = 1;
+	private static final int kRioDifference = 2;
+	private static final int kRioKalman = 3;
+	// For each source, the lag in ms, the RMS error at that lag, and the RMS
+	// error with no lag, averaged over the runs
+	private static double[][] s_results;
+
+	@BeforeAll
+	static void measure() {
+		// Wheel position every step, quantized like the hall sensor
+		double[] velocity = new double[kSteps + 1];
+		double[] counts = new double[kSteps + 1];
+		double position = 0;
+		for (int t = 0; t <= kSteps; t++) {
+			velocity[t] = kAmplitude * Math.sin(2 * Math.PI * kFrequency * t / (1000.0 * kStepsPerMs));
+			position += velocity[t] / (1000.0 * kStepsPerMs);
+			counts[t] = Math.floor(position / kMetersPerCount) * kMetersPerCount;
+		}
+		double[] sparkDefault = sparkVelocity(counts, 32, 8);
+		double[] sparkConfigured = sparkVelocity(counts, VelocityConstants.kMeasurementPeriod,
+				VelocityConstants.kAverageDepth);
+
+		s_results = new double[4][3];
+		Random random = new Random(0);
+		for (int run = 0; run < kRuns; run++) {
+			double[] loopTimes = new double[kDurationMs / kLoopMs];
+			for (int loop = 0; loop < loopTimes.length; loop++) {
+				loopTimes[loop] = loop * kLoopMs + random.nextDouble() * kMaxLoopDelayMs;
+			}
+			double[][] estimates = new double[4][];
+			estimates[kSparkDefault] = readFrames(sparkDefault, 20, random, loopTimes, null);
+			estimates[kSparkConfigured] = readFrames(sparkConfigured, VelocityConstants.kStatusFramePeriod, random,
+					loopTimes, null);
+			estimates[kRioDifference] = readFrames(counts, VelocityConstants.kStatusFramePeriod, random, loopTimes,
+					new DriveVelocityEstimator(false, 0, 0));
+			estimates[kRioKalman] = readFrames(counts, VelocityConstants.kStatusFramePeriod, random, loopTimes,
+					new DriveVelocityEstimator(true, VelocityConstants.kAccelerationStdDev,
+							VelocityConstants.kPositionStdDev));
+			for (int i = 0; i < estimates.length; i++) {
+				double[] result = bestLag(estimates[i], loopTimes, velocity);
+				for (int j = 0; j < 3; j++) {
+					s_results[i][j] += result[j] / kRuns;
+				}
+			}
+		}
+	}
+
+	@Test
+	void configuredSparkIsFasterThanDefault() {
+		assertTrue(s_results[kSparkConfigured][0] < s_results[kSparkDefault][0] / 3,
+				"configured " + s_results[kSparkConfigured][0] + " ms, default " + s_results[kSparkDefault][0]
+						+ " ms");
+	}
+
+	@Test
+	void kalmanEstimateLeadsConfiguredSpark() {
+		// Even stamped with the RIO read time, the RIO estimate is ahead of the SPARK
+		// MAX velocity, which is what it is kept for
+		assertTrue(s_results[kRioKalman][0] < s_results[kSparkConfigured][0],
+				"Kalman " + s_results[kRioKalman][0] + " ms, SPARK " + s_results[kSparkConfigured][0] + " ms");
+		// Without correcting for lag, which is how the drive uses it, it is closer to
+		// the real velocity than either other option
+		assertTrue(s_results[kRioKalman][2] < s_results[kSparkConfigured][2]);
+		assertTrue(s_results[kRioKalman][2] < s_results[kRioDifference][2]);
+	}
+
+	@Test
+	void kalmanFilterSmoothsDifference() {
+		assertTrue(s_results[kRioKalman][1] < s_results[kRioDifference][1],
+				"Kalman " + s_results[kRioKalman][1] + " m/s, difference " + s_results[kRioDifference][1] + " m/s");
+	}
+
+	@Test
+	void latencyConstantsMatch() {
+		assertEquals(VelocityConstants.kRioEstimateLatency * 1000, s_results[kRioKalman][0], kLagToleranceMs);
+		assertEquals(VelocityConstants.kSparkVelocityLatency * 1000, s_results[kSparkConfigured][0],
+				kLagToleranceMs);
+	}
+
+	/**
+	 * Models the velocity the SPARK MAX would put in a status frame at every step
+	 *
+	 * @return The velocity at every step
+	 */
+	private static double[] sparkVelocity(double[] counts, int periodMs, int depth) {
+		int period = periodMs * kStepsPerMs;
+		double[] samples = new double[depth];
+		int sampleCount = 0;
+		double average = 0;
+		double[] result = new double[kSteps + 1];
+		for (int t = 0; t <= kSteps; t++) {
+			if (t >= period && t % period == 0) {
+				samples[sampleCount % depth] = (counts[t] - counts[t - period]) * 1000 / periodMs;
+				sampleCount++;
+				double sum = 0;
+				int n = Math.min(sampleCount, depth);
+				for (int i = 0; i < n; i++) {
+					sum += samples[i];
+				}
+				average = sum / n;
+			}
+			result[t] = average;
+		}
+		return result;
+	}
+
+	/**
+	 * Sends a value in status frames at a random phase, delays each one on the
+	 * bus, and reads the newest one each loop
+	 *
+	 * @param values
+	 *                    The value the frame would hold at every step
+	 * @param framePeriod
+	 *                    The status frame period in ms
+	 * @param estimator
+	 *                    Turns the frame positions into velocities, or null to
+	 *                    read the value as is
+	 * @return The velocity seen at every loop
+	 */
+	private static double[] readFrames(double[] values, int framePeriod, Random random, double[] loopTimes,
+			DriveVelocityEstimator estimator) {
+		double phase = random.nextDouble() * framePeriod;
+		double[] result = new double[loopTimes.length];
+		double frameTime = phase;
+		double arrival = frameTime + random.nextDouble() * kMaxCanDelayMs;
+		double frame = 0;
+		for (int loop = 0; loop < loopTimes.length; loop++) {
+			// Take every frame that has arrived by the time the loop reads it
+			while (arrival <= loopTimes[loop]) {
+				frame = values[(int) (frameTime * kStepsPerMs)];
+				frameTime += framePeriod;
+				// Frames can't overtake each other
+				arrival = Math.max(arrival, frameTime + random.nextDouble() * kMaxCanDelayMs);
+			}
+			if (estimator != null) {
+				estimator.update(frame, loopTimes[loop] / 1000);
+				result[loop] = estimator.getVelocity();
+			} else {
+				result[loop] = frame;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the lag that best lines an estimate up with the real velocity
+	 *
+	 * @return The lag in ms, the RMS error at that lag, and the RMS error with no
+	 *         lag
+	 */
+	private static double[] bestLag(double[] estimate, double[] loopTimes, double[] velocity) {
+		int bestLag = 0;
+		double bestError = Double.MAX_VALUE;
+		for (int lag = 0; lag <= kMaxLagMs; lag++) {
+			double error = rmsError(estimate, loopTimes, velocity, lag);
+			if (error < bestError) {
+				bestError = error;
+				bestLag = lag;
+			}
+		}
+		return new double[] { bestLag, bestError, rmsError(estimate, loopTimes, velocity, 0) };
+	}
+
+	private static double rmsError(double[] estimate, double[] loopTimes, double[] velocity, int lag) {
+		double sum = 0;
+		int n = 0;
+		// Skip the first second while everything settles
+		for (int loop = 1000 / kLoopMs; loop < estimate.length; loop++) {
+			int t = (int) ((loopTimes[loop] - lag) * kStepsPerMs);
+			double error = estimate[loop] - velocity[t];
+			sum += error * error;
+			n++;
+		}
+		return Math.sqrt(sum / n);
+	}
+}
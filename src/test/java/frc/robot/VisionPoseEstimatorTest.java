@@ -0,0 +1,143 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.Constants.VisionConstants;
+
+class VisionPoseEstimatorTest {
+	private static final double kEpsilon = 1e-9;
+
+	private VisionPoseEstimator m_estimator;
+
+	@BeforeAll
+	static void initializeHal() {
+		// The estimator subscribes to its NetworkTables topic
+		assertTrue(HAL.initialize(500, 0));
+	}
+
+	@BeforeEach
+	void setup() {
+		m_estimator = new VisionPoseEstimator();
+	}
+
+	private static double gain(double odometryStdDev, double visionStdDev) {
+		return odometryStdDev * odometryStdDev
+				/ (odometryStdDev * odometryStdDev + visionStdDev * visionStdDev);
+	}
+
+	/** Drives forward at 1 m/s for a second, one odometry pose per loop */
+	private void driveForward() {
+		for (int loop = 0; loop <= 50; loop++) {
+			m_estimator.addOdometry(loop * 0.02, new Pose2d(loop * 0.02, 0, new Rotation2d()));
+		}
+	}
+
+	@Test
+	void rejectsMeasurementWithNoHistory() {
+		assertFalse(m_estimator.addVisionMeasurement(new Pose2d(1, 0, new Rotation2d()), 0, 0, 1));
+		assertEquals(0, m_estimator.getPose().getX(), kEpsilon);
+	}
+
+	@Test
+	void rejectsStaleMeasurement() {
+		driveForward();
+		// Older than anything left in the history
+		double captureTime = m_estimator.getOdometryHistory().getOldestTime() - 0.01;
+		assertFalse(m_estimator.addVisionMeasurement(new Pose2d(5, 5, new Rotation2d()), captureTime, 0, 1));
+		assertFalse(m_estimator.addVisionMeasurement(new Pose2d(5, 5, new Rotation2d()), Double.NaN, 0, 1));
+		assertEquals(1, m_estimator.getPose().getX(), kEpsilon);
+		assertEquals(0, m_estimator.getPose().getY(), kEpsilon);
+	}
+
+	@Test
+	void rejectsFarTagsAndNoTags() {
+		driveForward();
+		assertFalse(m_estimator.addVisionMeasurement(new Pose2d(5, 5, new Rotation2d()), 0.5,
+				VisionConstants.kMaxTagDistance + 0.1, 1));
+		assertFalse(m_estimator.addVisionMeasurement(new Pose2d(5, 5, new Rotation2d()), 0.5, 1, 0));
+		assertEquals(1, m_estimator.getPose().getX(), kEpsilon);
+	}
+
+	@Test
+	void correctsPoseAtCaptureTime() {
+		driveForward();
+		// Vision says the robot was 0.2 m further along when the frame was captured
+		assertTrue(m_estimator.addVisionMeasurement(new Pose2d(0.7, 0, new Rotation2d()), 0.5, 0, 1));
+		double translationGain = gain(VisionConstants.kOdometryTranslationStdDev,
+				VisionConstants.kVisionTranslationStdDev);
+		// The correction made at capture time carries through to the current pose
+		assertEquals(1 + 0.2 * translationGain, m_estimator.getPose().getX(), kEpsilon);
+		assertEquals(0, m_estimator.getPose().getY(), kEpsilon);
+	}
+
+	@Test
+	void measurementAfterNewestOdometryUsesNewestPose() {
+		driveForward();
+		assertTrue(m_estimator.addVisionMeasurement(new Pose2d(1.2, 0, new Rotation2d()), 1.01, 0, 1));
+		double translationGain = gain(VisionConstants.kOdometryTranslationStdDev,
+				VisionConstants.kVisionTranslationStdDev);
+		assertEquals(1 + 0.2 * translationGain, m_estimator.getPose().getX(), kEpsilon);
+	}
+
+	@Test
+	void moreTagsAreTrustedMore() {
+		double[] corrections = new double[3];
+		for (int tagCount = 1; tagCount <= 3; tagCount++) {
+			VisionPoseEstimator estimator = new VisionPoseEstimator();
+			estimator.addOdometry(0, new Pose2d());
+			estimator.addOdometry(0.02, new Pose2d());
+			assertTrue(estimator.addVisionMeasurement(new Pose2d(1, 0, Rotation2d.fromDegrees(10)), 0.02, 2,
+					tagCount));
+			corrections[tagCount - 1] = estimator.getPose().getX();
+
+			// The vision standard deviation is divided by the tag count
+			double distanceScale = (1 + 2 * 2 * VisionConstants.kStdDevPerMeterSquared) / tagCount;
+			assertEquals(gain(VisionConstants.kOdometryTranslationStdDev,
+					VisionConstants.kVisionTranslationStdDev * distanceScale), corrections[tagCount - 1], kEpsilon);
+			assertEquals(10 * gain(VisionConstants.kOdometryRotationStdDev,
+					VisionConstants.kVisionRotationStdDev * distanceScale),
+					estimator.getPose().getRotation().getDegrees(), kEpsilon);
+		}
+		assertTrue(corrections[0] < corrections[1]);
+		assertTrue(corrections[1] < corrections[2]);
+	}
+
+	@Test
+	void closerTagsAreTrustedMore() {
+		double[] corrections = new double[2];
+		double[] distances = { 1, 4 };
+		for (int i = 0; i < distances.length; i++) {
+			VisionPoseEstimator estimator = new VisionPoseEstimator();
+			estimator.addOdometry(0, new Pose2d());
+			assertTrue(estimator.addVisionMeasurement(new Pose2d(1, 0, new Rotation2d()), 0, distances[i], 1));
+			corrections[i] = estimator.getPose().getX();
+		}
+		assertTrue(corrections[0] > corrections[1]);
+	}
+
+	@Test
+	void resetPoseKeepsOdometryMoving() {
+		m_estimator.addOdometry(0, new Pose2d(1, 1, Rotation2d.fromDegrees(90)));
+		m_estimator.resetPose(new Pose2d(3, 0, new Rotation2d()));
+		assertEquals(3, m_estimator.getPose().getX(), kEpsilon);
+		// Odometry moving forward along its own heading moves the robot forward on the
+		// field too
+		m_estimator.addOdometry(0.02, new Pose2d(1, 2, Rotation2d.fromDegrees(90)));
+		assertEquals(4, m_estimator.getPose().getX(), kEpsilon);
+		assertEquals(0, m_estimator.getPose().getY(), kEpsilon);
+		assertEquals(4, m_estimator.getDeadReckonedPose().getX(), kEpsilon);
+	}
+}